@@ -4,5 +4,10 @@ public interface Auction {
 
     boolean propose(Bid bid);
 
+    // implementations override it to reject lower bids without allocating a Bid
+    default boolean propose(long id, long participantId, long price) {
+        return propose(new Bid(id, participantId, price));
+    }
+
     Bid getLatestBid();
 }
@@ -0,0 +1,112 @@
+package course.concurrency.exams.auction;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import static course.concurrency.exams.auction.Bid.DEFAULT_VALUE;
+
+/**
+ * Optimistic auction tuned for heavy contention on {@code latestBid}.
+ * <p>
+ * A proposal that loses a CAS does not retry right away: it publishes its price in a small
+ * array of pending bids and backs off exponentially, re-reading the latest bid while waiting.
+ * A proposal that finds a higher pending bid waits for it to land instead of fighting for the
+ * same cache line, since it is going to be outbid anyway. Waiting is always bounded, so a
+ * descheduled owner of a pending bid never blocks the others.
+ */
+public class AuctionAdaptive implements Auction {
+    private static final int PENDING_SLOTS = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2);
+    private static final int MIN_BACKOFF = 1 << 2;
+    private static final int MAX_BACKOFF = 1 << 10;
+
+    private final Notifier notifier;
+    private final AtomicReference<Bid> latestBid;
+    private final AtomicReferenceArray<Bid> pendingBids;
+
+    public AuctionAdaptive(Notifier notifier) {
+        this.notifier = notifier;
+        this.latestBid = new AtomicReference<>(new Bid(DEFAULT_VALUE, DEFAULT_VALUE, DEFAULT_VALUE));
+        this.pendingBids = new AtomicReferenceArray<>(PENDING_SLOTS);
+    }
+
+    public boolean propose(Bid bid) {
+        return propose(bid, bid.price());
+    }
+
+    public boolean propose(long id, long participantId, long price) {
+        if (price <= latestBid.get().price()) {
+            return false;
+        }
+
+        return propose(new Bid(id, participantId, price), price);
+    }
+
+    private boolean propose(Bid bid, long price) {
+        int backoff = MIN_BACKOFF;
+        Bid tempLatestBid;
+
+        while (true) {
+            tempLatestBid = latestBid.get();
+
+            if (price <= tempLatestBid.price()) {
+                return false;
+            }
+
+            if (latestBid.compareAndSet(tempLatestBid, bid)) {
+                break;
+            }
+
+            if (isOutbidByPending(price, backoff) || awaitOutbid(bid, price, backoff)) {
+                return false;
+            }
+
+            backoff = Math.min(backoff << 1, MAX_BACKOFF);
+        }
+
+        notifier.sendOutdatedMessage(tempLatestBid);
+        return true;
+    }
+
+    public Bid getLatestBid() {
+        return latestBid.get();
+    }
+
+    // a higher bid is in flight, give it a chance to land instead of competing with it
+    private boolean isOutbidByPending(long price, int spins) {
+        Bid pending = pendingBids.get(ThreadLocalRandom.current().nextInt(PENDING_SLOTS));
+
+        if (pending == null || pending.price() <= price) {
+            return false;
+        }
+
+        return spinUntilOutbid(price, spins);
+    }
+
+    // publish the bid so that lower ones can step aside, then back off
+    private boolean awaitOutbid(Bid bid, long price, int spins) {
+        int slot = ThreadLocalRandom.current().nextInt(PENDING_SLOTS);
+
+        if (!pendingBids.compareAndSet(slot, null, bid)) {
+            return spinUntilOutbid(price, spins);
+        }
+
+        try {
+            return spinUntilOutbid(price, spins);
+        } finally {
+            pendingBids.compareAndSet(slot, bid, null);
+        }
+    }
+
+    private boolean spinUntilOutbid(long price, int spins) {
+        for (int i = 0; i < spins; i++) {
+            if (price <= latestBid.get().price()) {
+                return true;
+            }
+
+            Thread.onSpinWait();
+        }
+
+        return false;
+    }
+}
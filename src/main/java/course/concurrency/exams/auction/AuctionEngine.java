@@ -0,0 +1,83 @@
+package course.concurrency.exams.auction;
+
+/**
+ * Runs many independent lots, each one backed by {@link AuctionStoppableOptimistic}.
+ * Lots are kept in {@link LotTable}s keyed by primitive lot ids, so bidding doesn't box
+ * or allocate for rejected bids. Lookups never lock, the tables are sharded by lot id
+ * so that opening and settling lots on different shards don't wait for the same lock.
+ * A lot stays after it is stopped, so its winning bid can be read, and is dropped by {@link #settle}.
+ */
+public class AuctionEngine {
+    private static final int DEFAULT_SHARDS = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 4);
+
+    private final Notifier notifier;
+    private final LotTable[] shards;
+    private final int mask;
+
+    public AuctionEngine(Notifier notifier) {
+        this(notifier, DEFAULT_SHARDS);
+    }
+
+    public AuctionEngine(Notifier notifier, int shardCount) {
+        if (shardCount <= 0 || Integer.bitCount(shardCount) != 1) {
+            throw new IllegalArgumentException("Shard count must be a positive power of two: " + shardCount);
+        }
+
+        this.notifier = notifier;
+        this.shards = new LotTable[shardCount];
+        this.mask = shardCount - 1;
+
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new LotTable();
+        }
+    }
+
+    // returns false if the lot is already open or was stopped and not settled yet
+    public boolean openLot(long lotId) {
+        return shardOf(lotId).putIfAbsent(lotId, new AuctionStoppableOptimistic(notifier, lotId)) == null;
+    }
+
+    // bids on unknown lots are rejected
+    public boolean propose(long lotId, Bid bid) {
+        AuctionStoppable lot = shardOf(lotId).get(lotId);
+        return lot != null && lot.propose(bid);
+    }
+
+    public boolean propose(long lotId, long id, long participantId, long price) {
+        AuctionStoppable lot = shardOf(lotId).get(lotId);
+        return lot != null && lot.propose(id, participantId, price);
+    }
+
+    // null for unknown lots
+    public Bid getLatestBid(long lotId) {
+        AuctionStoppable lot = shardOf(lotId).get(lotId);
+        return lot == null ? null : lot.getLatestBid();
+    }
+
+    // stop a single lot and return its latest bid, null for unknown lots
+    public Bid stopAuction(long lotId) {
+        AuctionStoppable lot = shardOf(lotId).get(lotId);
+        return lot == null ? null : lot.stopAuction();
+    }
+
+    // stop the lot if it is still open, forget it and return its final bid, null for unknown lots
+    public Bid settle(long lotId) {
+        AuctionStoppable lot = shardOf(lotId).remove(lotId);
+        return lot == null ? null : lot.stopAuction();
+    }
+
+    public long lotCount() {
+        long count = 0;
+
+        for (LotTable shard : shards) {
+            count += shard.size();
+        }
+
+        return count;
+    }
+
+    private LotTable shardOf(long lotId) {
+        // tables probe from the low bits of the mixed id, shards take the high ones
+        return shards[Integer.reverse(LotTable.spread(lotId)) & mask];
+    }
+}
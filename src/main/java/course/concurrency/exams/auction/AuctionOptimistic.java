@@ -15,12 +15,24 @@ public class AuctionOptimistic implements Auction {
     }
 
     public boolean propose(Bid bid) {
+        return propose(bid, bid.price());
+    }
+
+    public boolean propose(long id, long participantId, long price) {
+        if (price <= latestBid.get().price()) {
+            return false;
+        }
+
+        return propose(new Bid(id, participantId, price), price);
+    }
+
+    private boolean propose(Bid bid, long price) {
         Bid tempLatestBid;
 
         do {
             tempLatestBid = latestBid.get();
 
-            if (bid.getPrice() <= tempLatestBid.getPrice()) {
+            if (price <= tempLatestBid.price()) {
                 return false;
             }
         } while (!latestBid.compareAndSet(tempLatestBid, bid));
@@ -15,16 +15,30 @@ public class AuctionPessimistic implements Auction {
     }
 
     public boolean propose(Bid bid) {
-        if (bid.getPrice() <= latestBid.getPrice()) {
+        long price = bid.price();
+
+        if (price <= latestBid.price()) {
+            return false;
+        }
+
+        return propose(bid, price);
+    }
+
+    public boolean propose(long id, long participantId, long price) {
+        if (price <= latestBid.price()) {
             return false;
         }
 
+        return propose(new Bid(id, participantId, price), price);
+    }
+
+    private boolean propose(Bid bid, long price) {
         Bid tempLatestBid;
 
         synchronized (lock) {
             tempLatestBid = latestBid;
 
-            if (bid.getPrice() <= tempLatestBid.getPrice()) {
+            if (price <= tempLatestBid.price()) {
                 return false;
             }
 
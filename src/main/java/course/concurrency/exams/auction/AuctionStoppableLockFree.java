@@ -0,0 +1,80 @@
+package course.concurrency.exams.auction;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static course.concurrency.exams.auction.Bid.DEFAULT_VALUE;
+
+/**
+ * Stoppable auction without {@code AtomicMarkableReference}: the latest bid itself is the state,
+ * so proposals and {@code stopAuction()} race on a single CAS of one reference and a proposal
+ * allocates nothing besides its Bid. Stopping swaps in a marker that carries the winning bid,
+ * so the winner is known the moment the auction is closed and nobody waits for a proposer.
+ */
+public class AuctionStoppableLockFree implements AuctionStoppable {
+
+    private final Notifier notifier;
+    private final AtomicReference<Bid> latestBid;
+
+    public AuctionStoppableLockFree(Notifier notifier) {
+        this.notifier = notifier;
+        this.latestBid = new AtomicReference<>(new Bid(DEFAULT_VALUE, DEFAULT_VALUE, DEFAULT_VALUE));
+    }
+
+    public boolean propose(Bid bid) {
+        return propose(bid, bid.price());
+    }
+
+    public boolean propose(long id, long participantId, long price) {
+        Bid tempLatestBid = latestBid.get();
+
+        if (price <= tempLatestBid.price() || tempLatestBid instanceof Stopped) {
+            return false;
+        }
+
+        return propose(new Bid(id, participantId, price), price);
+    }
+
+    private boolean propose(Bid bid, long price) {
+        Bid tempLatestBid;
+
+        do {
+            tempLatestBid = latestBid.get();
+
+            if (price <= tempLatestBid.price() || tempLatestBid instanceof Stopped) {
+                return false;
+            }
+        } while (!latestBid.compareAndSet(tempLatestBid, bid));
+
+        notifier.sendOutdatedMessage(tempLatestBid);
+        return true;
+    }
+
+    public Bid getLatestBid() {
+        Bid tempLatestBid = latestBid.get();
+        return tempLatestBid instanceof Stopped ? ((Stopped) tempLatestBid).winner : tempLatestBid;
+    }
+
+    public Bid stopAuction() {
+        Bid tempLatestBid;
+
+        do {
+            tempLatestBid = latestBid.get();
+
+            if (tempLatestBid instanceof Stopped) {
+                return ((Stopped) tempLatestBid).winner;
+            }
+        } while (!latestBid.compareAndSet(tempLatestBid, new Stopped(tempLatestBid)));
+
+        return tempLatestBid;
+    }
+
+    // takes the price of the winner, so lower bids are rejected by the price check alone
+    private static final class Stopped extends Bid {
+        private final Bid winner;
+
+        private Stopped(Bid winner) {
+            super(winner.id(), winner.participantId(), winner.price());
+            this.winner = winner;
+        }
+    }
+}
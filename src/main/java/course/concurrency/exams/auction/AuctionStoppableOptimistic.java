@@ -6,15 +6,34 @@ import static course.concurrency.exams.auction.Bid.DEFAULT_VALUE;
 
 public class AuctionStoppableOptimistic implements AuctionStoppable {
     private final Notifier notifier;
+    private final long lotId;
     private final AtomicMarkableReference<Bid> latestBid;
 
     public AuctionStoppableOptimistic(Notifier notifier) {
+        this(notifier, DEFAULT_VALUE);
+    }
+
+    // lotId is passed to the notifier with outbid messages
+    public AuctionStoppableOptimistic(Notifier notifier, long lotId) {
         this.notifier = notifier;
+        this.lotId = lotId;
         this.latestBid = new AtomicMarkableReference<>(new Bid(DEFAULT_VALUE, DEFAULT_VALUE, DEFAULT_VALUE),
                 IS_AUCTION_OPEN_INITIALLY);
     }
 
     public boolean propose(Bid bid) {
+        return propose(bid, bid.price());
+    }
+
+    public boolean propose(long id, long participantId, long price) {
+        if (price <= latestBid.getReference().price() || !latestBid.isMarked()) {
+            return false;
+        }
+
+        return propose(new Bid(id, participantId, price), price);
+    }
+
+    private boolean propose(Bid bid, long price) {
         Bid tempLatestBid;
         boolean isAuctionOpen;
 
@@ -22,12 +41,12 @@ public class AuctionStoppableOptimistic implements AuctionStoppable {
             tempLatestBid = latestBid.getReference();
             isAuctionOpen = latestBid.isMarked();
 
-            if (bid.getPrice() <= tempLatestBid.getPrice() || !isAuctionOpen) {
+            if (price <= tempLatestBid.price() || !isAuctionOpen) {
                 return false;
             }
         } while (!latestBid.compareAndSet(tempLatestBid, bid, true, true));
 
-        notifier.sendOutdatedMessage(tempLatestBid);
+        notifier.sendOutdatedMessage(lotId, tempLatestBid);
         return true;
     }
 
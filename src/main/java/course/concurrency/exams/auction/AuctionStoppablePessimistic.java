@@ -17,18 +17,30 @@ public class AuctionStoppablePessimistic implements AuctionStoppable {
     }
 
     public boolean propose(Bid bid) {
-        if (bid.getPrice() <= latestBid.getPrice() || !isAuctionOpen) {
+        long price = bid.price();
+
+        if (price <= latestBid.price() || !isAuctionOpen) {
+            return false;
+        }
+
+        return propose(bid, price);
+    }
+
+    public boolean propose(long id, long participantId, long price) {
+        if (price <= latestBid.price() || !isAuctionOpen) {
             return false;
         }
 
+        return propose(new Bid(id, participantId, price), price);
+    }
+
+    private boolean propose(Bid bid, long price) {
         Bid tempLatestBid;
-        boolean tempIsAuctionOpen;
 
         synchronized (lock) {
             tempLatestBid = latestBid;
-            tempIsAuctionOpen = isAuctionOpen;
 
-            if (bid.getPrice() <= tempLatestBid.getPrice() || !tempIsAuctionOpen) {
+            if (price <= tempLatestBid.price() || !isAuctionOpen) {
                 return false;
             }
 
@@ -0,0 +1,15 @@
+package course.concurrency.exams.auction;
+
+public class AuctionStoppableWithHistory extends AuctionWithHistory implements AuctionStoppable {
+
+    private final AuctionStoppable auction;
+
+    public AuctionStoppableWithHistory(AuctionStoppable auction, int historyCapacity) {
+        super(auction, historyCapacity);
+        this.auction = auction;
+    }
+
+    public Bid stopAuction() {
+        return auction.stopAuction();
+    }
+}
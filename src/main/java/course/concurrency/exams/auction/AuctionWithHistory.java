@@ -0,0 +1,46 @@
+package course.concurrency.exams.auction;
+
+import java.util.List;
+
+/**
+ * Records every accepted bid of the wrapped auction in a {@link BidHistory}.
+ * Records happen after the accepting CAS, so concurrent ones arrive in any order,
+ * the history orders them by price and keeps the top {@code historyCapacity} bids.
+ */
+public class AuctionWithHistory implements Auction {
+
+    private final Auction auction;
+    private final BidHistory history;
+
+    public AuctionWithHistory(Auction auction, int historyCapacity) {
+        this.auction = auction;
+        this.history = new BidHistory(historyCapacity);
+    }
+
+    public boolean propose(Bid bid) {
+        if (!auction.propose(bid)) {
+            return false;
+        }
+
+        history.record(bid.id(), bid.participantId(), bid.price());
+        return true;
+    }
+
+    public boolean propose(long id, long participantId, long price) {
+        if (!auction.propose(id, participantId, price)) {
+            return false;
+        }
+
+        history.record(id, participantId, price);
+        return true;
+    }
+
+    public Bid getLatestBid() {
+        return auction.getLatestBid();
+    }
+
+    // top bids are available for settlement, e.g. the second price or a fallback winner
+    public List<Bid> getTopBids(int k) {
+        return history.getTopBids(k);
+    }
+}
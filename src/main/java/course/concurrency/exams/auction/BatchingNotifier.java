@@ -0,0 +1,265 @@
+package course.concurrency.exams.auction;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Notifier that coalesces outbid messages per participant and lot and sends them in batches.
+ * <p>
+ * Only the latest outbid bid of every participant in every lot is kept until the next flush,
+ * a flush happens when {@code batchSize} messages are pending or every {@code maxDelayMillis}.
+ * Both the pending messages and the queue of batches waiting for a sender are bounded,
+ * what happens on overflow is decided by {@link OverflowPolicy}. {@link #shutdown()} sends the pending
+ * messages, messages that arrive after it are counted as dropped.
+ * <p>
+ * Messages sent without a lot id are grouped under {@link Bid#DEFAULT_VALUE}.
+ */
+public class BatchingNotifier extends Notifier {
+
+    public enum OverflowPolicy {
+        // drop the message of a participant that does not fit into the pending batch
+        DROP,
+        // also ask the flusher to send pending messages right away, the bidding thread never sends
+        FLUSH
+    }
+
+    public static final class Outbid {
+        private final long lotId;
+        private final Bid bid;
+
+        Outbid(long lotId, Bid bid) {
+            this.lotId = lotId;
+            this.bid = bid;
+        }
+
+        public long lotId() {
+            return lotId;
+        }
+
+        public Bid bid() {
+            return bid;
+        }
+    }
+
+    private static final class Key {
+        private final long participantId;
+        private final long lotId;
+
+        Key(long participantId, long lotId) {
+            this.participantId = participantId;
+            this.lotId = lotId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return participantId == key.participantId && lotId == key.lotId;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(participantId * 31 + lotId);
+        }
+    }
+
+    private enum Outcome { ADDED, COALESCED, FULL }
+
+    private final int batchSize;
+    private final int capacity;
+    private final OverflowPolicy overflowPolicy;
+
+    // pendingCount is raised before a message is added and lowered after it is removed,
+    // so it never undercounts the map and the map never holds more than capacity messages
+    private final ConcurrentHashMap<Key, Outbid> pending = new ConcurrentHashMap<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private volatile boolean isShutdown;
+    private final ScheduledExecutorService flusher;
+
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder sent = new LongAdder();
+
+    public BatchingNotifier(int batchSize, long maxDelayMillis, int capacity, int maxQueuedBatches,
+                            OverflowPolicy overflowPolicy) {
+        super(new ThreadPoolExecutor(MAX_THREADS, MAX_THREADS, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(maxQueuedBatches)));
+
+        if (batchSize <= 0 || batchSize > capacity) {
+            throw new IllegalArgumentException("Batch size must be in [1, capacity]: " + batchSize);
+        }
+
+        this.batchSize = batchSize;
+        this.capacity = capacity;
+        this.overflowPolicy = overflowPolicy;
+
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "BatchingNotifier_Flusher");
+            t.setDaemon(true);
+            return t;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, maxDelayMillis, maxDelayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void sendOutdatedMessage(Bid bid) {
+        sendOutdatedMessage(Bid.DEFAULT_VALUE, bid);
+    }
+
+    @Override
+    public void sendOutdatedMessage(long lotId, Bid bid) {
+        if (bid.id() == Bid.DEFAULT_VALUE) {
+            return;
+        }
+        if (isShutdown) {
+            dropped.increment();
+            return;
+        }
+
+        Key key = new Key(bid.participantId(), lotId);
+        Outbid message = new Outbid(lotId, bid);
+        Outcome outcome = offer(key, message);
+
+        if (outcome == Outcome.FULL && overflowPolicy == OverflowPolicy.FLUSH) {
+            requestFlush();
+        }
+
+        switch (outcome) {
+            case COALESCED:
+                coalesced.increment();
+                break;
+            case FULL:
+                dropped.increment();
+                break;
+            default:
+                if (pendingCount.get() >= batchSize) {
+                    requestFlush();
+                }
+        }
+    }
+
+    // replaces the pending message of the key or adds a new one if there is room, atomically per key
+    private Outcome offer(Key key, Outbid message) {
+        Outcome[] outcome = new Outcome[1];
+
+        pending.compute(key, (k, current) -> {
+            if (current != null) {
+                outcome[0] = Outcome.COALESCED;
+                return message;
+            }
+            if (pendingCount.incrementAndGet() > capacity) {
+                pendingCount.decrementAndGet();
+                outcome[0] = Outcome.FULL;
+                return null;
+            }
+            outcome[0] = Outcome.ADDED;
+            return message;
+        });
+
+        return outcome[0];
+    }
+
+    private void requestFlush() {
+        if (flushRequested.compareAndSet(false, true)) {
+            try {
+                flusher.execute(this::flush);
+            } catch (RejectedExecutionException e) {
+                flushRequested.set(false);
+            }
+        }
+    }
+
+    // sends what was pending when it started, messages added meanwhile wait for the next flush
+    private void flush() {
+        flushRequested.set(false);
+
+        for (int remaining = pendingCount.get(); remaining > 0; remaining -= batchSize) {
+            List<Outbid> batch = new ArrayList<>(Math.min(batchSize, remaining));
+
+            for (Key key : pending.keySet()) {
+                Outbid message = pending.remove(key);
+                if (message != null) {
+                    pendingCount.decrementAndGet();
+                    batch.add(message);
+                }
+                if (batch.size() == batchSize) {
+                    break;
+                }
+            }
+
+            if (batch.isEmpty()) {
+                return;
+            }
+
+            send(batch);
+        }
+    }
+
+    private void send(List<Outbid> batch) {
+        try {
+            executor.execute(() -> sendBatch(batch));
+            batches.increment();
+            sent.add(batch.size());
+        } catch (RejectedExecutionException e) {
+            dropped.add(batch.size());
+        }
+    }
+
+    /**
+     * Delivers one batch, runs on a sender thread. Imitates a single bulk request that carries
+     * all the messages, override it to hand the batch to a real messaging client.
+     */
+    protected void sendBatch(List<Outbid> batch) {
+        imitateSending();
+    }
+
+    // outbid messages that replaced a pending message of the same participant
+    public long getCoalescedCount() {
+        return coalesced.sum();
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    public long getBatchCount() {
+        return batches.sum();
+    }
+
+    // messages handed over to senders
+    public long getSentCount() {
+        return sent.sum();
+    }
+
+    public int getPendingCount() {
+        return pendingCount.get();
+    }
+
+    /**
+     * Sends the pending messages and stops. Batches queued for senders are still delivered,
+     * messages that no sender can take are counted as dropped.
+     */
+    @Override
+    public void shutdown() {
+        isShutdown = true;
+        flusher.shutdown();
+        flush();
+        super.shutdown();
+        // messages that were being added during the flush above can't be sent anymore
+        flush();
+    }
+}
@@ -3,11 +3,11 @@ package course.concurrency.exams.auction;
 public class Bid {
     public static final long DEFAULT_VALUE = -111L;
 
-    private final Long id;
-    private final Long participantId;
-    private final Long price;
+    private final long id;
+    private final long participantId;
+    private final long price;
 
-    public Bid(Long id, Long participantId, Long price) {
+    public Bid(long id, long participantId, long price) {
         this.id = id;
         this.participantId = participantId;
         this.price = price;
@@ -24,4 +24,17 @@ public class Bid {
     public Long getPrice() {
         return price;
     }
+
+    // primitive accessors for the hot path, getters above box on every call
+    public long id() {
+        return id;
+    }
+
+    public long participantId() {
+        return participantId;
+    }
+
+    public long price() {
+        return price;
+    }
 }
@@ -0,0 +1,139 @@
+package course.concurrency.exams.auction;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Preallocated top of the highest recorded bids.
+ * <p>
+ * Every slot is guarded by its own sequence: even once a bid is in place, odd while a writer
+ * fills it in, zero while empty. A writer finds the slot with the lowest price, claims it with
+ * a CAS on its sequence if the price is still the one it saw and writes its bid there. Slot prices
+ * only grow, so the lowest price a writer saw is still the current minimum, and the slots hold
+ * the top bids however the records of concurrent writers interleave.
+ * <p>
+ * A threshold below every kept price lets bids that can't make the top return without the scan;
+ * a writer raises it to the lowest price it leaves behind. Writers never allocate, readers skip
+ * a slot that is being written instead of waiting for its writer.
+ */
+public class BidHistory {
+    private static final int ID = 0;
+    private static final int PARTICIPANT = 1;
+    private static final int FIELDS = 2;
+    private static final VarHandle PRICES = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private final int capacity;
+    private final LongAdder recorded = new LongAdder();
+    private final AtomicLongArray sequences;
+    private final AtomicLongArray values;
+    // at most the lowest kept price, only grows
+    private final AtomicLong threshold = new AtomicLong(Long.MIN_VALUE);
+    // kept apart from the other fields, so that finding the lowest price reads a few cache lines
+    private final long[] prices;
+
+    public BidHistory(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+
+        this.capacity = capacity;
+        this.sequences = new AtomicLongArray(capacity);
+        this.values = new AtomicLongArray(capacity * FIELDS);
+        this.prices = new long[capacity];
+        Arrays.fill(prices, Long.MIN_VALUE);
+    }
+
+    public void record(long id, long participantId, long price) {
+        recorded.increment();
+
+        while (true) {
+            if (price <= threshold.get()) {
+                return;
+            }
+
+            // a price seen here is at most the current one, so the real minimum is no higher
+            int minSlot = 0;
+            long minPrice = (long) PRICES.getOpaque(prices, 0);
+            long nextPrice = Long.MAX_VALUE;
+            for (int slot = 1; slot < capacity; slot++) {
+                long slotPrice = (long) PRICES.getOpaque(prices, slot);
+                if (slotPrice < minPrice) {
+                    minSlot = slot;
+                    nextPrice = minPrice;
+                    minPrice = slotPrice;
+                } else if (slotPrice < nextPrice) {
+                    nextPrice = slotPrice;
+                }
+            }
+
+            if (minPrice >= price) {
+                // capacity bids at least this high are already kept and never get lower
+                return;
+            }
+
+            long sequence = sequences.get(minSlot);
+            if ((sequence & 1) == 0 && (long) PRICES.getVolatile(prices, minSlot) == minPrice
+                    && sequences.compareAndSet(minSlot, sequence, sequence + 1)) {
+                int base = minSlot * FIELDS;
+                values.set(base + ID, id);
+                values.set(base + PARTICIPANT, participantId);
+                PRICES.setVolatile(prices, minSlot, price);
+                sequences.set(minSlot, sequence + 2);
+                // every other slot held at least nextPrice when scanned, and prices only grow
+                long lowest = Math.min(nextPrice, price);
+                threshold.accumulateAndGet(lowest, Math::max);
+                return;
+            }
+
+            Thread.onSpinWait();
+        }
+    }
+
+    // highest bids first, at most min(k, capacity) of them
+    public List<Bid> getTopBids(int k) {
+        List<Bid> bids = new ArrayList<>(capacity);
+
+        for (int slot = 0; slot < capacity; slot++) {
+            Bid bid = read(slot);
+            if (bid != null) {
+                bids.add(bid);
+            }
+        }
+
+        bids.sort(Comparator.comparingLong(Bid::price).reversed());
+        return bids.size() > k ? new ArrayList<>(bids.subList(0, k)) : bids;
+    }
+
+    // accepted bids, including the ones that didn't make it into the top
+    public long getRecordedCount() {
+        return recorded.sum();
+    }
+
+    // null for an empty slot or one that is being written, a changed slot is read again
+    private Bid read(int slot) {
+        int base = slot * FIELDS;
+
+        while (true) {
+            long before = sequences.get(slot);
+
+            if (before == 0 || (before & 1) != 0) {
+                return null;
+            }
+
+            long id = values.get(base + ID);
+            long participantId = values.get(base + PARTICIPANT);
+            long price = (long) PRICES.getVolatile(prices, slot);
+
+            if (sequences.get(slot) == before) {
+                return new Bid(id, participantId, price);
+            }
+        }
+    }
+}
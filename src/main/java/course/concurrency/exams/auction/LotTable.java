@@ -0,0 +1,130 @@
+package course.concurrency.exams.auction;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Map of lot id to lot that keeps ids as primitives, so lookups don't box.
+ * <p>
+ * Open addressing over a table that readers reach through one volatile read and never lock.
+ * Writers take the lock of the table. A new lot fills an empty cell: the id is written first,
+ * then the lot is published with a volatile store. A removed lot leaves a tombstone that is
+ * never reused in place, so a reader can't match an old lot with a new id. Tombstones go away
+ * when the table is rebuilt.
+ */
+class LotTable {
+    private static final Object REMOVED = new Object();
+
+    private static final class Table {
+        final long[] ids;
+        final AtomicReferenceArray<Object> lots;
+
+        Table(int capacity) {
+            ids = new long[capacity];
+            lots = new AtomicReferenceArray<>(capacity);
+        }
+    }
+
+    private volatile Table table = new Table(16);
+    private volatile int size;
+    private int used;
+
+    public AuctionStoppable get(long id) {
+        Table t = table;
+        int mask = t.ids.length - 1;
+        int i = spread(id) & mask;
+
+        while (true) {
+            Object lot = t.lots.get(i);
+            if (lot == null) {
+                return null;
+            }
+            if (lot != REMOVED && t.ids[i] == id) {
+                return (AuctionStoppable) lot;
+            }
+            i = (i + 1) & mask;
+        }
+    }
+
+    // returns the lot already mapped to the id, or null if the new one was added
+    public synchronized AuctionStoppable putIfAbsent(long id, AuctionStoppable lot) {
+        AuctionStoppable existing = get(id);
+        if (existing != null) {
+            return existing;
+        }
+
+        if ((used + 1) * 2 > table.ids.length) {
+            rebuild();
+        }
+
+        Table t = table;
+        int mask = t.ids.length - 1;
+        int i = spread(id) & mask;
+        while (t.lots.get(i) != null) {
+            i = (i + 1) & mask;
+        }
+
+        t.ids[i] = id;
+        t.lots.set(i, lot);
+        used++;
+        size++;
+        return null;
+    }
+
+    public synchronized AuctionStoppable remove(long id) {
+        Table t = table;
+        int mask = t.ids.length - 1;
+        int i = spread(id) & mask;
+
+        while (true) {
+            Object lot = t.lots.get(i);
+            if (lot == null) {
+                return null;
+            }
+            if (lot != REMOVED && t.ids[i] == id) {
+                t.lots.set(i, REMOVED);
+                size--;
+                return (AuctionStoppable) lot;
+            }
+            i = (i + 1) & mask;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // copies live lots into a table at most a quarter full, dropping tombstones
+    private void rebuild() {
+        Table old = table;
+        int capacity = 16;
+        while (capacity < (size + 1) * 4) {
+            capacity <<= 1;
+        }
+
+        Table t = new Table(capacity);
+        int mask = capacity - 1;
+        for (int j = 0; j < old.ids.length; j++) {
+            Object lot = old.lots.get(j);
+            if (lot != null && lot != REMOVED) {
+                int i = spread(old.ids[j]) & mask;
+                while (t.lots.get(i) != null) {
+                    i = (i + 1) & mask;
+                }
+                t.ids[i] = old.ids[j];
+                t.lots.set(i, lot);
+            }
+        }
+
+        used = size;
+        table = t;
+    }
+
+    // murmur3 finalizer, sequential lot ids don't form long probe runs
+    static int spread(long id) {
+        long h = id;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+}
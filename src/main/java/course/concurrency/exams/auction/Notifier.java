@@ -2,23 +2,33 @@ package course.concurrency.exams.auction;
 
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 public class Notifier {
-    private static final int MAX_THREADS = Runtime.getRuntime().availableProcessors();
+    protected static final int MAX_THREADS = Runtime.getRuntime().availableProcessors();
 
-    private final ExecutorService executor;
+    protected final ExecutorService executor;
 
     public Notifier() {
-        executor = Executors.newFixedThreadPool(MAX_THREADS);
+        this(Executors.newFixedThreadPool(MAX_THREADS));
+    }
+
+    protected Notifier(ExecutorService executor) {
+        this.executor = executor;
     }
 
     public void sendOutdatedMessage(Bid bid) {
-        if (bid.getId() != Bid.DEFAULT_VALUE) {
+        if (bid.id() != Bid.DEFAULT_VALUE) {
             executor.submit(this::imitateSending);
         }
     }
 
-    private void imitateSending() {
+    // lot of the outbid bid, notifiers that don't group messages by lot ignore it
+    public void sendOutdatedMessage(long lotId, Bid bid) {
+        sendOutdatedMessage(bid);
+    }
+
+    protected void imitateSending() {
         try {
             Thread.sleep(2000);
         } catch (InterruptedException e) {
@@ -28,4 +38,8 @@ public class Notifier {
     public void shutdown() {
         executor.shutdown();
     }
+
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return executor.awaitTermination(timeout, unit);
+    }
 }
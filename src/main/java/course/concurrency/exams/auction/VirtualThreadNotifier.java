@@ -0,0 +1,80 @@
+package course.concurrency.exams.auction;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Notifier that runs every blocking send on its own virtual thread, at most
+ * {@code maxInFlight} sends at a time.
+ * <p>
+ * The project targets Java 11, so the virtual thread executor is looked up at runtime.
+ * On JVMs without virtual threads it falls back to a pool of {@code maxInFlight}
+ * platform threads, which gives the same concurrency limit.
+ */
+public class VirtualThreadNotifier extends Notifier {
+    private static final long KEEP_ALIVE_SECONDS = 60L;
+
+    private final int maxInFlight;
+    private final Semaphore inFlight;
+    private final boolean isVirtual;
+
+    public VirtualThreadNotifier(int maxInFlight) {
+        this(virtualThreadPerTaskExecutor(), maxInFlight);
+    }
+
+    private VirtualThreadNotifier(ExecutorService virtualExecutor, int maxInFlight) {
+        super(virtualExecutor != null ? virtualExecutor : boundedPlatformExecutor(maxInFlight));
+        this.maxInFlight = maxInFlight;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.isVirtual = virtualExecutor != null;
+    }
+
+    @Override
+    public void sendOutdatedMessage(Bid bid) {
+        if (bid.id() != Bid.DEFAULT_VALUE) {
+            executor.execute(this::sendWithPermit);
+        }
+    }
+
+    private void sendWithPermit() {
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        try {
+            imitateSending();
+        } finally {
+            inFlight.release();
+        }
+    }
+
+    public boolean isVirtual() {
+        return isVirtual;
+    }
+
+    public int getInFlightCount() {
+        return maxInFlight - inFlight.availablePermits();
+    }
+
+    private static ExecutorService virtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    private static ExecutorService boundedPlatformExecutor(int threads) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+}
@@ -0,0 +1,294 @@
+package course.concurrency.exams.refactoring;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hashed timer wheel on a single daemon thread.
+ * <p>
+ * A timeout goes to the bucket of its deadline modulo the wheel size and remembers how many
+ * laps to wait, so scheduling and cancelling are O(1) and every tick only looks at one bucket.
+ * Deadlines are rounded up to the tick. Tasks run on the timer thread and should only
+ * hand work over to an executor. The thread starts with {@link #start()} or the first timeout,
+ * so a timer that is never used doesn't hold one.
+ */
+public class HashedWheelTimer {
+    private static final int INIT = 0;
+    private static final int CANCELLED = 1;
+    private static final int EXPIRED = 2;
+
+    private static final int WORKER_INIT = 0;
+    private static final int WORKER_STARTED = 1;
+    private static final int WORKER_STOPPED = 2;
+
+    private final long tickNanos;
+    private final Bucket[] wheel;
+    private final int mask;
+
+    // only the worker touches the buckets, other threads go through these queues
+    private final Queue<Timeout> scheduled = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+
+    private final Thread worker;
+    private final long startNanos;
+    private final AtomicInteger workerState = new AtomicInteger(WORKER_INIT);
+    private long tick;
+
+    /**
+     * @param wheelSize rounded up to a power of two
+     */
+    public HashedWheelTimer(String name, long tickDuration, TimeUnit unit, int wheelSize) {
+        this.tickNanos = Math.max(1, unit.toNanos(tickDuration));
+        int size = Integer.highestOneBit(Math.max(1, wheelSize - 1)) << 1;
+        this.wheel = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new Bucket();
+        }
+        this.mask = size - 1;
+
+        this.startNanos = System.nanoTime();
+        this.worker = new Thread(this::run, name);
+        worker.setDaemon(true);
+    }
+
+    /**
+     * Starts the timer thread, does nothing if it runs already.
+     * @throws IllegalStateException if the timer is stopped
+     */
+    public void start() {
+        if (!tryStart()) {
+            throw new IllegalStateException("Timer is stopped");
+        }
+    }
+
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        return add(new Timeout(task, deadlineOf(delay, unit), 0));
+    }
+
+    /**
+     * Runs the task repeatedly, the next run is scheduled {@code delay} after the previous one ends.
+     * Cancelling the returned timeout stops the series.
+     */
+    public Timeout scheduleWithFixedDelay(Runnable task, long delay, TimeUnit unit) {
+        return add(new Timeout(task, deadlineOf(delay, unit), Math.max(1, unit.toNanos(delay))));
+    }
+
+    /**
+     * Stops the timer thread, scheduled tasks are dropped.
+     * @return number of timeouts that never ran
+     */
+    public int stop() {
+        if (workerState.getAndSet(WORKER_STOPPED) == WORKER_STARTED && Thread.currentThread() != worker) {
+            worker.interrupt();
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        int unprocessed = 0;
+        for (Bucket bucket : wheel) {
+            unprocessed += bucket.clear();
+        }
+        Timeout timeout;
+        while ((timeout = scheduled.poll()) != null) {
+            if (timeout.state.get() == INIT) {
+                unprocessed++;
+            }
+        }
+        cancelled.clear();
+        return unprocessed;
+    }
+
+    public boolean isStopped() {
+        return workerState.get() == WORKER_STOPPED;
+    }
+
+    private boolean tryStart() {
+        if (workerState.get() == WORKER_INIT && workerState.compareAndSet(WORKER_INIT, WORKER_STARTED)) {
+            worker.start();
+        }
+        return workerState.get() != WORKER_STOPPED;
+    }
+
+    private Timeout add(Timeout timeout) {
+        if (!tryStart()) {
+            throw new RejectedExecutionException("Timer is stopped");
+        }
+        scheduled.offer(timeout);
+        return timeout;
+    }
+
+    private long deadlineOf(long delay, TimeUnit unit) {
+        return System.nanoTime() - startNanos + Math.max(0, unit.toNanos(delay));
+    }
+
+    private void run() {
+        // ticks passed before the start have nothing to expire
+        tick = (System.nanoTime() - startNanos) / tickNanos;
+        while (workerState.get() == WORKER_STARTED) {
+            long deadline = (tick + 1) * tickNanos;
+            long sleepNanos = deadline - (System.nanoTime() - startNanos);
+            if (sleepNanos > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleepNanos);
+                } catch (InterruptedException e) {
+                    continue;
+                }
+            }
+
+            removeCancelled();
+            transferScheduled();
+            wheel[(int) (tick & mask)].expire(deadline);
+            tick++;
+        }
+    }
+
+    private void removeCancelled() {
+        Timeout timeout;
+        while ((timeout = cancelled.poll()) != null) {
+            if (timeout.bucket != null) {
+                timeout.bucket.remove(timeout);
+            }
+        }
+    }
+
+    private void transferScheduled() {
+        Timeout timeout;
+        while ((timeout = scheduled.poll()) != null) {
+            if (timeout.state.get() == CANCELLED) {
+                continue;
+            }
+            place(timeout);
+        }
+    }
+
+    private void place(Timeout timeout) {
+        long ticks = Math.max((timeout.deadline + tickNanos - 1) / tickNanos - 1, tick);
+        timeout.remainingRounds = (ticks - tick) / wheel.length;
+        wheel[(int) (ticks & mask)].add(timeout);
+    }
+
+    public class Timeout {
+        private final Runnable task;
+        private final long periodNanos;
+        private final AtomicInteger state = new AtomicInteger(INIT);
+        private long deadline;
+        private long remainingRounds;
+
+        private Bucket bucket;
+        private Timeout prev;
+        private Timeout next;
+
+        private Timeout(Runnable task, long deadline, long periodNanos) {
+            this.task = task;
+            this.deadline = deadline;
+            this.periodNanos = periodNanos;
+        }
+
+        /**
+         * @return false if the task has already run or was cancelled before
+         */
+        public boolean cancel() {
+            if (!state.compareAndSet(INIT, CANCELLED)) {
+                return false;
+            }
+            cancelled.offer(this);
+            return true;
+        }
+
+        public boolean isCancelled() {
+            return state.get() == CANCELLED;
+        }
+
+        public boolean isExpired() {
+            return state.get() == EXPIRED;
+        }
+
+        private void expire() {
+            if (periodNanos == 0 && !state.compareAndSet(INIT, EXPIRED)) {
+                return;
+            }
+            if (periodNanos > 0 && state.get() != INIT) {
+                return;
+            }
+
+            try {
+                task.run();
+            } catch (Throwable e) {
+                Thread t = Thread.currentThread();
+                t.getUncaughtExceptionHandler().uncaughtException(t, e);
+            }
+
+            if (periodNanos > 0 && state.get() == INIT && workerState.get() == WORKER_STARTED) {
+                deadline = System.nanoTime() - startNanos + periodNanos;
+                place(this);
+            }
+        }
+    }
+
+    private static class Bucket {
+        private Timeout head;
+        private Timeout tail;
+
+        private void add(Timeout timeout) {
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        private void expire(long deadline) {
+            Timeout timeout = head;
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                if (timeout.isCancelled()) {
+                    remove(timeout);
+                } else if (timeout.remainingRounds <= 0 && timeout.deadline <= deadline) {
+                    remove(timeout);
+                    timeout.expire();
+                } else if (timeout.remainingRounds > 0) {
+                    timeout.remainingRounds--;
+                }
+                timeout = next;
+            }
+        }
+
+        private void remove(Timeout timeout) {
+            if (timeout.bucket != this) {
+                return;
+            }
+            if (timeout.prev != null) {
+                timeout.prev.next = timeout.next;
+            } else {
+                head = timeout.next;
+            }
+            if (timeout.next != null) {
+                timeout.next.prev = timeout.prev;
+            } else {
+                tail = timeout.prev;
+            }
+            timeout.prev = timeout.next = null;
+            timeout.bucket = null;
+        }
+
+        private int clear() {
+            int pending = 0;
+            for (Timeout timeout = head; timeout != null; timeout = timeout.next) {
+                if (timeout.state.get() == INIT) {
+                    pending++;
+                }
+            }
+            head = tail = null;
+            return pending;
+        }
+    }
+}
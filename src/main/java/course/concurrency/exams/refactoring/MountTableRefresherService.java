@@ -5,23 +5,37 @@ import course.concurrency.exams.refactoring.Others.RouterState;
 
 import java.util.AbstractMap.SimpleEntry;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 public class MountTableRefresherService {
 
-    private enum RouterUpdateState {
+    private static final int DEFAULT_REFRESH_PARALLELISM = 16;
+    private static final long KEEP_ALIVE_SECONDS = 60;
+    private static final long REFRESH_WINDOW_MILLIS = 50;
+    private static final long INITIAL_RETRY_MILLIS = 1000;
+    private static final long MAX_RETRY_MILLIS = 60_000;
+    private static final long TIMER_TICK_MILLIS = 10;
+    private static final int TIMER_WHEEL_SIZE = 512;
+
+    enum RouterUpdateState {
         SUCCESS,
         FAIL,
         TIMEOUT
@@ -30,10 +44,7 @@ public class MountTableRefresherService {
     private final Function<String, MountTableManager> createManager =
             adminAddress -> new Others.MountTableManager(isLocalAdmin(adminAddress) ? "local" : adminAddress);
 
-    private final Predicate<String> doRefresh = adminAddress -> {
-        Thread.currentThread().setName("MountTableRefresh_" + adminAddress);
-        return createManager.apply(adminAddress).refresh();
-    };
+    private final Predicate<String> doRefresh = adminAddress -> createManager.apply(adminAddress).refresh();
 
     private Others.RouterStore routerStore = new Others.RouterStore();
     private long cacheUpdateTimeout;
@@ -46,116 +57,357 @@ public class MountTableRefresherService {
     private Others.LoadingCache<String, Others.RouterClient> routerClientsCache;
 
     /**
-     * Removes expired RouterClient from routerClientsCache.
+     * Single daemon thread for all timers of the service: router client expiry, collapsed
+     * refresh requests and retries. Created with the service like the executors below,
+     * its thread starts in serviceInit() or with the first timeout.
+     */
+    private volatile HashedWheelTimer maintenanceTimer;
+
+    private final int refreshParallelism;
+    private final boolean useVirtualThreads;
+
+    /**
+     * Runs router refreshes, so that thousands of routers don't occupy the common pool.
+     * Created with the service because it may be used before serviceInit(),
+     * recreated by serviceInit() after a stop.
+     */
+    private volatile ExecutorService refreshExecutor;
+
+    /**
+     * Runs collapsed refresh requests and router client expiry one at a time.
+     */
+    private volatile ExecutorService triggerExecutor;
+
+    /**
+     * Version of the local mount table. Routers that report it already are not refreshed.
+     */
+    private final AtomicLong mountTableVersion = new AtomicLong(1);
+    private final AtomicBoolean refreshRequested = new AtomicBoolean();
+    private final Map<String, Retry> retries = new ConcurrentHashMap<>();
+    private final Object refreshLock = new Object();
+    private final Others.MembershipListener membershipListener = this::onMembershipChange;
+
+    private final RefreshMetrics metrics = new RefreshMetrics();
+    private volatile RefreshMetrics.Exporter metricsExporter;
+
+    public MountTableRefresherService() {
+        this(DEFAULT_REFRESH_PARALLELISM, false);
+    }
+
+    /**
+     * @param refreshParallelism max routers refreshed at once by platform threads
+     * @param useVirtualThreads  refresh every router on its own virtual thread when the runtime has them,
+     *                           parallelism is not limited then
      */
-    private ScheduledExecutorService clientCacheCleanerScheduler;
+    public MountTableRefresherService(int refreshParallelism, boolean useVirtualThreads) {
+        this.refreshParallelism = refreshParallelism;
+        this.useVirtualThreads = useVirtualThreads;
+        this.refreshExecutor = createRefreshExecutor();
+        this.triggerExecutor = createTriggerExecutor();
+        this.maintenanceTimer = createMaintenanceTimer();
+    }
 
     public void serviceInit() {
-        long routerClientMaxLiveTime = 15L;
-        this.cacheUpdateTimeout = 10L;
-        routerClientsCache = new Others.LoadingCache<String, Others.RouterClient>();
-        routerStore.getCachedRecords().stream().map(Others.RouterState::getAdminAddress)
-                .forEach(addr -> routerClientsCache.add(addr, new Others.RouterClient()));
+        if (refreshExecutor.isShutdown()) {
+            refreshExecutor = createRefreshExecutor();
+        }
+        if (triggerExecutor.isShutdown()) {
+            triggerExecutor = createTriggerExecutor();
+        }
+        if (maintenanceTimer.isStopped()) {
+            maintenanceTimer = createMaintenanceTimer();
+        }
+        maintenanceTimer.start();
 
-        initClientCacheCleaner(routerClientMaxLiveTime);
+        long routerClientMaxLiveTime = TimeUnit.MINUTES.toMillis(5);
+        this.cacheUpdateTimeout = 10L;
+        /*
+         * Every client is removed and closed once it sits idle for routerClientMaxLiveTime.
+         * Its expiry is a timeout on the maintenance timer, checked on the trigger thread.
+         */
+        routerClientsCache = new Others.LoadingCache<>(adminAddress -> new Others.RouterClient(),
+                routerClientMaxLiveTime, 0, 0, maintenanceTimer, task -> triggerExecutor.execute(task));
+        // routers added after the snapshot reach the listener, none fall in between
+        routerStore.addMembershipListener(membershipListener).stream().map(Others.RouterState::getAdminAddress)
+                .forEach(this::addRouter);
     }
 
     public void serviceStop() {
-        clientCacheCleanerScheduler.shutdown();
+        routerStore.removeMembershipListener(membershipListener);
+        triggerExecutor.shutdownNow();
+        refreshExecutor.shutdownNow();
+        maintenanceTimer.stop();
         // remove and close all admin clients
-        routerClientsCache.cleanUp();
+        routerClientsCache.invalidateAll();
+    }
+
+    private ExecutorService createRefreshExecutor() {
+        ExecutorService virtualExecutor = useVirtualThreads ? virtualThreadPerTaskExecutor() : null;
+        if (virtualExecutor != null) {
+            return virtualExecutor;
+        }
+
+        AtomicInteger counter = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(refreshParallelism, refreshParallelism,
+                KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+                    Thread t = new Thread(r, "MountTableRefresh_" + counter.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private static ExecutorService createTriggerExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1,
+                KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+                    Thread t = new Thread(r, "MountTableRefresh_Trigger");
+                    t.setDaemon(true);
+                    return t;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private static HashedWheelTimer createMaintenanceTimer() {
+        return new HashedWheelTimer("MountTableRefresh_Timer", TIMER_TICK_MILLIS, TimeUnit.MILLISECONDS,
+                TIMER_WHEEL_SIZE);
+    }
+
+    private static ExecutorService virtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    // timer thread only hands the task over, refreshes block and run on the trigger thread
+    private void runLater(Runnable task, long delayMillis) {
+        maintenanceTimer.schedule(() -> {
+            try {
+                triggerExecutor.execute(task);
+            } catch (RejectedExecutionException ignored) {
+                // service is stopped
+            }
+        }, delayMillis, TimeUnit.MILLISECONDS);
     }
 
-    private void initClientCacheCleaner(long routerClientMaxLiveTime) {
-        ThreadFactory tf = new ThreadFactory() {
-            @Override
-            public Thread newThread(Runnable r) {
-                Thread t = new Thread();
-                t.setName("MountTableRefresh_ClientsCacheCleaner");
-                t.setDaemon(true);
-                return t;
+    /**
+     * Local mount table has changed, routers are brought to the new version by a refresh
+     * that runs shortly after. Changes arriving within {@link #REFRESH_WINDOW_MILLIS} share one refresh.
+     */
+    public void mountTableChanged() {
+        mountTableVersion.incrementAndGet();
+        requestRefresh();
+    }
+
+    /**
+     * Refresh of the routers behind the current version that runs shortly after.
+     * Routers that failed recently wait for their backoff to pass, unless the version has changed since.
+     */
+    public void requestRefresh() {
+        if (refreshRequested.compareAndSet(false, true)) {
+            try {
+                runLater(() -> {
+                    refreshRequested.set(false);
+                    refreshStale();
+                }, REFRESH_WINDOW_MILLIS);
+            } catch (RejectedExecutionException e) {
+                refreshRequested.set(false);
             }
-        };
+        }
+    }
 
-        clientCacheCleanerScheduler =
-                Executors.newSingleThreadScheduledExecutor(tf);
-        /*
-         * When cleanUp() method is called, expired RouterClient will be removed and
-         * closed.
-         */
-        clientCacheCleanerScheduler.scheduleWithFixedDelay(
-                () -> routerClientsCache.cleanUp(), routerClientMaxLiveTime,
-                routerClientMaxLiveTime, TimeUnit.MILLISECONDS);
+    // new routers are behind the current version, so the refresh reaches only them
+    private void onMembershipChange(List<RouterState> added, List<RouterState> removed) {
+        for (RouterState state : removed) {
+            removeFromCache(state.getAdminAddress());
+            retries.remove(state.getAdminAddress());
+            metrics.remove(state.getAdminAddress());
+        }
+
+        if (!added.isEmpty()) {
+            added.forEach(state -> addRouter(state.getAdminAddress()));
+            requestRefresh();
+        }
+    }
+
+    private void addRouter(String adminAddress) {
+        routerClientsCache.add(adminAddress, new Others.RouterClient());
+        metrics.add(adminAddress);
+    }
+
+    public long getMountTableVersion() {
+        return mountTableVersion.get();
     }
 
     /**
-     * Refresh mount table cache of this router as well as all other routers.
+     * Refresh mount table cache of this router as well as all other routers,
+     * whatever version they report and even if they failed recently.
      */
     public void refresh() {
-        List<Entry<String, CompletableFuture<RouterUpdateState>>> refreshers = routerStore.getCachedRecords()
-                .stream()
-                .map(RouterState::getAdminAddress)
-                .filter(adminAddress -> adminAddress != null && !adminAddress.isEmpty())
-                .map(adminAddress -> new SimpleEntry<>(
-                                adminAddress,
-                                CompletableFuture.supplyAsync(() -> doRefresh.test(adminAddress)
-                                                ? RouterUpdateState.SUCCESS
-                                                : RouterUpdateState.FAIL
-                                        )
-                                        .completeOnTimeout(RouterUpdateState.TIMEOUT, cacheUpdateTimeout,
-                                                TimeUnit.MILLISECONDS)
-                                        .exceptionally(e -> RouterUpdateState.FAIL)
-                        )
-                )
-                .collect(Collectors.toList());
-
-        if (!refreshers.isEmpty()) {
-            invokeRefresh(refreshers);
+        refresh(true);
+    }
+
+    // routers at the current version are skipped, failed ones wait for their backoff
+    private void refreshStale() {
+        refresh(false);
+    }
+
+    private void refresh(boolean isForced) {
+        // a manual refresh and a triggered one never run at the same time
+        synchronized (refreshLock) {
+            long version = mountTableVersion.get();
+            long now = System.currentTimeMillis();
+
+            List<Entry<RouterState, CompletableFuture<RouterUpdateState>>> refreshers = routerStore.getCachedRecords()
+                    .stream()
+                    .filter(state -> state.getAdminAddress() != null && !state.getAdminAddress().isEmpty())
+                    .filter(state -> isForced || state.getMountTableVersion() < version)
+                    .filter(state -> isForced || isRetryDue(state.getAdminAddress(), version, now))
+                    .map(state -> new SimpleEntry<>(state, refreshAsync(state.getAdminAddress())))
+                    .collect(Collectors.toList());
+
+            if (!refreshers.isEmpty()) {
+                invokeRefresh(refreshers, version);
+            }
+        }
+    }
+
+    // a backoff earned on an older version doesn't hold back the new one
+    private boolean isRetryDue(String adminAddress, long version, long now) {
+        Retry retry = retries.get(adminAddress);
+        return retry == null || retry.version < version || retry.nextAttemptAt <= now;
+    }
+
+    // doubles the backoff of a router on every failure in a row at the same version
+    private long scheduleRetry(String adminAddress, long version) {
+        Retry retry = retries.compute(adminAddress, (address, previous) -> {
+            long backoff = previous == null || previous.version < version
+                    ? INITIAL_RETRY_MILLIS
+                    : Math.min(previous.backoffMillis * 2, MAX_RETRY_MILLIS);
+            return new Retry(backoff, System.currentTimeMillis() + backoff, version);
+        });
+        return retry.backoffMillis;
+    }
+
+    /*
+     * The timeout starts when the refresh gets a thread, so routers queued behind slow ones are still tried.
+     * Only a timeout completes the result with TIMEOUT: the refresh is then cancelled, a queued one never
+     * runs and a running one is interrupted, so a hanging router gives its thread back.
+     */
+    private CompletableFuture<RouterUpdateState> refreshAsync(String adminAddress) {
+        CompletableFuture<RouterUpdateState> result = new CompletableFuture<>();
+
+        FutureTask<Void> task = new FutureTask<>(() -> {
+            if (result.isDone()) {
+                return;
+            }
+            result.completeOnTimeout(RouterUpdateState.TIMEOUT, cacheUpdateTimeout, TimeUnit.MILLISECONDS);
+            // the refresh goes through the router's client: this access keeps it cached, an expired one is loaded again
+            routerClientsCache.get(adminAddress);
+            metrics.refreshStarted();
+            long start = System.nanoTime();
+            RouterUpdateState state;
+            try {
+                state = doRefresh.test(adminAddress) ? RouterUpdateState.SUCCESS : RouterUpdateState.FAIL;
+            } catch (Throwable e) {
+                state = RouterUpdateState.FAIL;
+            }
+            // recorded before the result, so the metrics exported after the refresh include this router
+            metrics.refreshFinished(adminAddress, System.nanoTime() - start);
+            result.complete(state);
+        }, null);
+        result.thenAccept(state -> {
+            if (state == RouterUpdateState.TIMEOUT) {
+                task.cancel(true);
+            }
+        });
+
+        try {
+            refreshExecutor.execute(task);
+        } catch (RejectedExecutionException e) {
+            result.complete(RouterUpdateState.FAIL);
         }
+
+        return result;
+    }
+
+    /*
+     * Routers are refreshed in waves of refreshParallelism, each of them gets its own timeout once it runs.
+     * One more timeout covers the hand-offs, so refreshes that can't start in time, e.g. because earlier
+     * routers ignore the interrupt and keep their threads, are timed out instead of blocking the refresh.
+     */
+    private long refreshDeadlineMillis(int routers) {
+        int waves = refreshExecutor instanceof ThreadPoolExecutor
+                ? (routers + refreshParallelism - 1) / refreshParallelism
+                : 1;
+        return cacheUpdateTimeout * (waves + 1);
     }
 
     private void removeFromCache(String adminAddress) {
         routerClientsCache.invalidate(adminAddress);
     }
 
-    private void invokeRefresh(List<Entry<String, CompletableFuture<RouterUpdateState>>> refreshers) {
+    private void invokeRefresh(List<Entry<RouterState, CompletableFuture<RouterUpdateState>>> refreshers,
+                               long version) {
         AtomicBoolean isInterrupted = new AtomicBoolean(false);
         AtomicBoolean allReqCompleted = new AtomicBoolean(true);
         AtomicInteger failureCount = new AtomicInteger();
 
         CompletableFuture<Void> awaitAll = CompletableFuture.allOf(refreshers.stream()
                 .map(Entry::getValue)
-                .toArray(CompletableFuture[]::new)
+                .toArray(CompletableFuture<?>[]::new)
         );
 
         try {
-            awaitAll.get();
+            awaitAll.get(refreshDeadlineMillis(refreshers.size()), TimeUnit.MILLISECONDS);
         } catch (InterruptedException | ExecutionException e) {
             isInterrupted.set(true);
+        } catch (TimeoutException ignored) {
+            // routers that are not done yet are timed out below
         }
 
-        for (Entry<String, CompletableFuture<RouterUpdateState>> refresher : refreshers) {
-            RouterUpdateState value;
+        long nextRetryMillis = Long.MAX_VALUE;
 
-            try {
-                value = refresher.getValue().get(0L, TimeUnit.SECONDS);
-            } catch (InterruptedException | ExecutionException | TimeoutException e) {
-                isInterrupted.set(true);
-                value = RouterUpdateState.FAIL;
-            }
+        for (Entry<RouterState, CompletableFuture<RouterUpdateState>> refresher : refreshers) {
+            // cancels the refresh if it is still queued or running
+            refresher.getValue().complete(RouterUpdateState.TIMEOUT);
+            RouterUpdateState value = refresher.getValue().join();
 
-            if (value != RouterUpdateState.SUCCESS) {
+            String adminAddress = refresher.getKey().getAdminAddress();
+            metrics.outcome(adminAddress, value);
+
+            if (value == RouterUpdateState.SUCCESS) {
+                refresher.getKey().updateMountTableVersion(version);
+                retries.remove(adminAddress);
+            } else {
                 if (value == RouterUpdateState.TIMEOUT) {
                     allReqCompleted.set(false);
                 }
 
-                removeFromCache(refresher.getKey());
+                removeFromCache(adminAddress);
                 failureCount.incrementAndGet();
+                nextRetryMillis = Math.min(nextRetryMillis, scheduleRetry(adminAddress, version));
+            }
+        }
+
+        if (nextRetryMillis != Long.MAX_VALUE) {
+            try {
+                runLater(this::requestRefresh, nextRetryMillis);
+            } catch (RejectedExecutionException ignored) {
+                // service is stopped
             }
         }
 
         logResult(refreshers.size() - failureCount.get(), failureCount.get(), allReqCompleted.get(),
                 isInterrupted.get());
+
+        RefreshMetrics.Exporter exporter = metricsExporter;
+        if (exporter != null) {
+            metrics.export(exporter);
+        }
     }
 
     private boolean isLocalAdmin(String adminAddress) {
@@ -188,7 +440,33 @@ public class MountTableRefresherService {
         this.routerClientsCache = cache;
     }
 
+    public RefreshMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @param exporter gets the metrics after every refresh, null to stop exporting
+     */
+    public void setMetricsExporter(RefreshMetrics.Exporter exporter) {
+        this.metricsExporter = exporter;
+    }
+
+    /**
+     * Membership listener is registered on the store by serviceInit(), so the store is set before it.
+     */
     public void setRouterStore(Others.RouterStore routerStore) {
         this.routerStore = routerStore;
     }
-}
\ No newline at end of file
+
+    private static class Retry {
+        private final long backoffMillis;
+        private final long nextAttemptAt;
+        private final long version;
+
+        private Retry(long backoffMillis, long nextAttemptAt, long version) {
+            this.backoffMillis = backoffMillis;
+            this.nextAttemptAt = nextAttemptAt;
+            this.version = version;
+        }
+    }
+}
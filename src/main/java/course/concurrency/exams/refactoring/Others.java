@@ -1,27 +1,259 @@
 package course.concurrency.exams.refactoring;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
 
 public class Others {
 
+    /**
+     * Loading cache with expire-after-access, expire-after-write and a size bound.
+     * <p>
+     * Expired entries are dropped lazily on {@link #get}. Given a timer, every entry also schedules
+     * its own expiry at its deadline; the check runs on the given executor, and an entry that was
+     * accessed in the meantime is scheduled again for its new deadline. Without a timer
+     * {@link #cleanUp()} sweeps the map. Past {@code maxSize} the oldest written entries are evicted.
+     * Zero disables the corresponding limit.
+     */
     public static class LoadingCache<K, V> {
-        Map<K,V> map = new ConcurrentHashMap<>();
+        Map<K, Entry<K, V>> map = new ConcurrentHashMap<>();
+
+        private final Function<K, V> loader;
+        private final long expireAfterAccessNanos;
+        private final long expireAfterWriteNanos;
+        private final int maxSize;
+
+        private final HashedWheelTimer timer;
+        private final Executor expiryExecutor;
+
+        private final Queue<Entry<K, V>> writeOrder = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger writeOrderSize = new AtomicInteger();
+
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+        private final LongAdder evictions = new LongAdder();
+
+        public LoadingCache() {
+            this(null, 0, 0, 0);
+        }
+
+        /**
+         * @param loader creates a value on a miss in {@link #get}, may be null
+         */
+        public LoadingCache(Function<K, V> loader, long expireAfterAccessMillis, long expireAfterWriteMillis,
+                            int maxSize) {
+            this(loader, expireAfterAccessMillis, expireAfterWriteMillis, maxSize, null, null);
+        }
+
+        /**
+         * @param timer          expires every entry at its deadline, may be null
+         * @param expiryExecutor runs the expiry checks, the timer thread only hands them over
+         */
+        public LoadingCache(Function<K, V> loader, long expireAfterAccessMillis, long expireAfterWriteMillis,
+                            int maxSize, HashedWheelTimer timer, Executor expiryExecutor) {
+            this.loader = loader;
+            this.expireAfterAccessNanos = TimeUnit.MILLISECONDS.toNanos(expireAfterAccessMillis);
+            this.expireAfterWriteNanos = TimeUnit.MILLISECONDS.toNanos(expireAfterWriteMillis);
+            this.maxSize = maxSize;
+            this.timer = timer;
+            this.expiryExecutor = expiryExecutor;
+        }
+
+        public V get(K key) {
+            long now = System.nanoTime();
+            Entry<K, V> entry = map.get(key);
+
+            if (entry != null) {
+                if (!entry.isExpired(now)) {
+                    entry.accessedAt = now;
+                    hits.increment();
+                    return entry.value;
+                }
+                if (map.remove(key, entry)) {
+                    evicted(entry);
+                }
+            }
+
+            misses.increment();
+            if (loader == null) {
+                return null;
+            }
+
+            Entry<K, V> loaded = map.compute(key, (k, current) ->
+                    current != null && !current.isExpired(now) ? current : newEntry(k, loader.apply(k), now));
+            // another thread may have loaded it first, then it is scheduled already
+            if (loaded != entry && loaded.writtenAt == now) {
+                scheduled(loaded);
+            }
+            return loaded.value;
+        }
 
         public void add(K key, V value) {
-            map.put(key, value);
+            Entry<K, V> entry = newEntry(key, value, System.nanoTime());
+            cancelExpiry(map.put(key, entry));
+            scheduled(entry);
         }
 
         public void invalidate(String address) {
-            map.remove(address);
+            cancelExpiry(map.remove(address));
+        }
+
+        public void invalidateAll() {
+            map.values().forEach(this::cancelExpiry);
+            map.clear();
+            writeOrder.clear();
+            writeOrderSize.set(0);
+        }
+
+        /**
+         * Removes all expired entries, scanning the whole map. A cache with a timer doesn't need it.
+         */
+        public void cleanUp() {
+            long now = System.nanoTime();
+            for (Entry<K, V> entry : map.values()) {
+                if (entry.isExpired(now) && map.remove(entry.key, entry)) {
+                    evicted(entry);
+                }
+            }
+        }
+
+        public int size() {
+            return map.size();
+        }
+
+        public long getHitCount() {
+            return hits.sum();
+        }
+
+        public long getMissCount() {
+            return misses.sum();
+        }
+
+        public long getEvictionCount() {
+            return evictions.sum();
+        }
+
+        private Entry<K, V> newEntry(K key, V value, long now) {
+            return new Entry<>(key, value, now, expireAfterAccessNanos, expireAfterWriteNanos);
+        }
+
+        private void scheduled(Entry<K, V> entry) {
+            scheduleExpiry(entry);
+
+            if (maxSize > 0) {
+                writeOrder.offer(entry);
+                writeOrderSize.incrementAndGet();
+                evictOverflow();
+            }
+        }
+
+        private void scheduleExpiry(Entry<K, V> entry) {
+            long deadline = entry.deadline();
+            if (timer == null || deadline == Long.MAX_VALUE) {
+                return;
+            }
+            try {
+                entry.expiry = timer.schedule(() -> {
+                    try {
+                        expiryExecutor.execute(() -> expire(entry));
+                    } catch (RejectedExecutionException ignored) {
+                        // executor is shut down, get() still drops the entry once it expires
+                    }
+                }, deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            } catch (RejectedExecutionException ignored) {
+                // timer is stopped, same as above
+            }
+        }
+
+        private void expire(Entry<K, V> entry) {
+            if (map.get(entry.key) != entry) {
+                // invalidated or replaced, the replacement has its own timeout
+                return;
+            }
+            if (!entry.isExpired(System.nanoTime())) {
+                // accessed in the meantime
+                scheduleExpiry(entry);
+            } else if (map.remove(entry.key, entry)) {
+                evictions.increment();
+            }
         }
 
-        public void cleanUp() { map.clear(); }
+        private void evicted(Entry<K, V> entry) {
+            evictions.increment();
+            cancelExpiry(entry);
+        }
+
+        private void cancelExpiry(Entry<K, V> entry) {
+            HashedWheelTimer.Timeout expiry = entry != null ? entry.expiry : null;
+            if (expiry != null) {
+                expiry.cancel();
+            }
+        }
+
+        private void evictOverflow() {
+            while (map.size() > maxSize || writeOrderSize.get() > 2 * maxSize) {
+                Entry<K, V> oldest = writeOrder.poll();
+                if (oldest == null) {
+                    return;
+                }
+                writeOrderSize.decrementAndGet();
+                if (map.size() > maxSize && map.remove(oldest.key, oldest)) {
+                    evicted(oldest);
+                }
+            }
+        }
 
+        private static class Entry<K, V> {
+            private final K key;
+            private final V value;
+            private final long writtenAt;
+            private final long expireAfterAccess;
+            private final long expireAfterWrite;
+            private volatile long accessedAt;
+            private volatile HashedWheelTimer.Timeout expiry;
+
+            private Entry(K key, V value, long now, long expireAfterAccess, long expireAfterWrite) {
+                this.key = key;
+                this.value = value;
+                this.writtenAt = now;
+                this.accessedAt = now;
+                this.expireAfterAccess = expireAfterAccess;
+                this.expireAfterWrite = expireAfterWrite;
+            }
+
+            private long deadline() {
+                long deadline = Long.MAX_VALUE;
+                if (expireAfterWrite > 0) {
+                    deadline = writtenAt + expireAfterWrite;
+                }
+                if (expireAfterAccess > 0) {
+                    deadline = Math.min(deadline, accessedAt + expireAfterAccess);
+                }
+                return deadline;
+            }
+
+            private boolean isExpired(long now) {
+                long deadline = deadline();
+                return deadline != Long.MAX_VALUE && now - deadline >= 0;
+            }
+        }
     }
 
     public static class RouterClient {
@@ -31,6 +263,7 @@ public class Others {
     public static class RouterState {
         private static AtomicInteger counter = new AtomicInteger(0);
         private String adminAddress;
+        private final AtomicLong mountTableVersion = new AtomicLong();
 
         public RouterState(String address) {
             this.adminAddress = address + counter.incrementAndGet();
@@ -39,14 +272,117 @@ public class Others {
         public String getAdminAddress() {
             return adminAddress;
         }
+
+        // version of the mount table the router has applied, 0 if it was never refreshed
+        public long getMountTableVersion() {
+            return mountTableVersion.get();
+        }
+
+        public void updateMountTableVersion(long version) {
+            mountTableVersion.accumulateAndGet(version, Math::max);
+        }
     }
 
+    /**
+     * Router registry with immutable snapshots.
+     * <p>
+     * Readers get the current snapshot with a single volatile read and may iterate it while
+     * membership changes. Writers copy the array and publish it under a lock, a batch of routers
+     * costs one copy. Listeners are told about every change after it is published and before the
+     * lock is released, so they see changes one at a time and in the order they were published.
+     */
     public static class RouterStore {
-        List<RouterState> states = new ArrayList<>();
+        private static final RouterState[] EMPTY = new RouterState[0];
+
+        private volatile RouterState[] states = EMPTY;
+        private final List<MembershipListener> listeners = new CopyOnWriteArrayList<>();
+        private final Object writeLock = new Object();
 
         public List<RouterState> getCachedRecords() {
-            return states;
+            return Collections.unmodifiableList(Arrays.asList(states));
+        }
+
+        public int size() {
+            return states.length;
+        }
+
+        public void add(RouterState state) {
+            addAll(List.of(state));
         }
+
+        public void addAll(Collection<RouterState> added) {
+            if (added.isEmpty()) {
+                return;
+            }
+
+            synchronized (writeLock) {
+                RouterState[] current = states;
+                RouterState[] next = Arrays.copyOf(current, current.length + added.size());
+                int i = current.length;
+                for (RouterState state : added) {
+                    next[i++] = state;
+                }
+                states = next;
+
+                notifyListeners(List.copyOf(added), List.of());
+            }
+        }
+
+        public boolean remove(RouterState state) {
+            return !removeAll(List.of(state)).isEmpty();
+        }
+
+        /**
+         * @return routers that were in the store and are removed now
+         */
+        public List<RouterState> removeAll(Collection<RouterState> removed) {
+            Set<RouterState> toRemove = Collections.newSetFromMap(new IdentityHashMap<>());
+            toRemove.addAll(removed);
+
+            synchronized (writeLock) {
+                RouterState[] current = states;
+                List<RouterState> actuallyRemoved = new ArrayList<>();
+                List<RouterState> kept = new ArrayList<>(current.length);
+                for (RouterState state : current) {
+                    if (toRemove.contains(state)) {
+                        actuallyRemoved.add(state);
+                    } else {
+                        kept.add(state);
+                    }
+                }
+                if (actuallyRemoved.isEmpty()) {
+                    return List.of();
+                }
+                states = kept.toArray(EMPTY);
+
+                notifyListeners(List.of(), actuallyRemoved);
+                return actuallyRemoved;
+            }
+        }
+
+        /**
+         * @return routers in the store when the listener was added, every later change reaches the listener
+         */
+        public List<RouterState> addMembershipListener(MembershipListener listener) {
+            synchronized (writeLock) {
+                listeners.add(listener);
+                return getCachedRecords();
+            }
+        }
+
+        public void removeMembershipListener(MembershipListener listener) {
+            listeners.remove(listener);
+        }
+
+        private void notifyListeners(List<RouterState> added, List<RouterState> removed) {
+            for (MembershipListener listener : listeners) {
+                listener.onChange(added, removed);
+            }
+        }
+    }
+
+    public interface MembershipListener {
+        void onChange(List<RouterState> added, List<RouterState> removed);
     }
 
     public static class MountTableManager {
@@ -0,0 +1,136 @@
+package course.concurrency.exams.refactoring;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Refresh latency and outcomes, per router and in total.
+ * <p>
+ * Latencies go into power-of-two microsecond buckets. Every router gets its buckets when it joins,
+ * recording is a map lookup and a few atomic increments, nothing is allocated. Recording never
+ * adds a router: a refresh that ends after its router was removed counts in the total only.
+ */
+public class RefreshMetrics {
+    private static final int BUCKETS = 40;
+
+    private final Map<String, Router> routers = new ConcurrentHashMap<>();
+    private final Router total = new Router();
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    public void refreshStarted() {
+        inFlight.incrementAndGet();
+    }
+
+    public void refreshFinished(String adminAddress, long latencyNanos) {
+        inFlight.decrementAndGet();
+        int bucket = bucketOf(latencyNanos / 1000);
+        total.record(bucket, latencyNanos);
+        Router router = routers.get(adminAddress);
+        if (router != null) {
+            router.record(bucket, latencyNanos);
+        }
+    }
+
+    public void outcome(String adminAddress, MountTableRefresherService.RouterUpdateState state) {
+        total.outcomes.incrementAndGet(state.ordinal());
+        Router router = routers.get(adminAddress);
+        if (router != null) {
+            router.outcomes.incrementAndGet(state.ordinal());
+        }
+    }
+
+    public void add(String adminAddress) {
+        routers.computeIfAbsent(adminAddress, address -> new Router());
+    }
+
+    public void remove(String adminAddress) {
+        routers.remove(adminAddress);
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public long getOutcomeCount(MountTableRefresherService.RouterUpdateState state) {
+        return total.outcomes.get(state.ordinal());
+    }
+
+    public long getOutcomeCount(String adminAddress, MountTableRefresherService.RouterUpdateState state) {
+        Router router = routers.get(adminAddress);
+        return router == null ? 0 : router.outcomes.get(state.ordinal());
+    }
+
+    // upper bound of the bucket with the given percentile, -1 if the router wasn't refreshed
+    public long getLatencyMicros(String adminAddress, double percentile) {
+        Router router = routers.get(adminAddress);
+        return router == null ? -1 : router.percentileMicros(percentile);
+    }
+
+    public long getLatencyMicros(double percentile) {
+        return total.percentileMicros(percentile);
+    }
+
+    public void export(Exporter exporter) {
+        exporter.inFlight(inFlight.get());
+        for (MountTableRefresherService.RouterUpdateState state : MountTableRefresherService.RouterUpdateState.values()) {
+            exporter.outcome(state.name(), total.outcomes.get(state.ordinal()));
+        }
+        exporter.latency(null, total.count.get(), total.percentileMicros(0.5), total.percentileMicros(0.99),
+                total.maxNanos.get() / 1000);
+        routers.forEach((address, router) -> exporter.latency(address, router.count.get(),
+                router.percentileMicros(0.5), router.percentileMicros(0.99), router.maxNanos.get() / 1000));
+    }
+
+    private static int bucketOf(long micros) {
+        return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+    }
+
+    /**
+     * Receives metrics on {@link #export}. Latencies are in microseconds,
+     * the address is null for the totals over all routers.
+     */
+    public interface Exporter {
+        void inFlight(int count);
+
+        void outcome(String state, long count);
+
+        void latency(String adminAddress, long count, long p50Micros, long p99Micros, long maxMicros);
+    }
+
+    private static class Router {
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final AtomicLongArray outcomes =
+                new AtomicLongArray(MountTableRefresherService.RouterUpdateState.values().length);
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        private void record(int bucket, long latencyNanos) {
+            buckets.incrementAndGet(bucket);
+            count.incrementAndGet();
+            long max;
+            while (latencyNanos > (max = maxNanos.get()) && !maxNanos.compareAndSet(max, latencyNanos)) {
+                // retry until the max is ours or a bigger one
+            }
+        }
+
+        private long percentileMicros(double percentile) {
+            long total = count.get();
+            if (total == 0) {
+                return -1;
+            }
+
+            long threshold = (long) Math.ceil(total * percentile);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += buckets.get(i);
+                if (seen >= threshold) {
+                    return 1L << i;
+                }
+            }
+            return 1L << (BUCKETS - 1);
+        }
+    }
+}
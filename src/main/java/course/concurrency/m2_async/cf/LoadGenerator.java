@@ -1,5 +1,6 @@
 package course.concurrency.m2_async.cf;
 
+import java.util.concurrent.CancellationException;
 import java.util.stream.IntStream;
 
 public class LoadGenerator {
@@ -13,11 +14,13 @@ public class LoadGenerator {
         try {
             Thread.sleep(1500);
         } catch (InterruptedException e) {
-            e.printStackTrace();
+            // a cancelled caller stops here instead of building a result from unfinished work
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while working");
         }
     }
 
-    private static int compute() {
+    public static int compute() {
         return IntStream.range(0, 5_000_000).boxed().filter(i -> i % 2 == 0).reduce((a, b) -> b).get();
     }
 }
\ No newline at end of file
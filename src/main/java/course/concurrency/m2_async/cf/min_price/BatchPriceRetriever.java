@@ -0,0 +1,7 @@
+package course.concurrency.m2_async.cf.min_price;
+
+public interface BatchPriceRetriever {
+
+    // prices in the order of itemIds, NaN if the shop has no price for an item
+    double[] getPrices(long[] itemIds, long shopId);
+}
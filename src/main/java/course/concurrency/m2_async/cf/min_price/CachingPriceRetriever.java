@@ -0,0 +1,274 @@
+package course.concurrency.m2_async.cf.min_price;
+
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Price cache keyed by (itemId, shopId) in front of another {@link PriceRetriever}.
+ * <p>
+ * A price is fresh for {@code ttlMillis}. For another {@code staleMillis} it is still returned
+ * right away while a background refresh fetches a new one, after that it is loaded again.
+ * Concurrent misses of the same key share one load. Once there are more than {@code maxSize}
+ * keys, the oldest inserted ones are evicted.
+ * <p>
+ * Hits only read the map. Keys are added to and removed from the map under the lock of the
+ * insertion order, so the order always holds each cached key exactly once.
+ */
+public class CachingPriceRetriever extends PriceRetriever {
+    private static final int REFRESH_THREADS = 4;
+    private static final int REFRESH_QUEUE = 1024;
+
+    private final PriceRetriever delegate;
+    private final long ttlNanos;
+    private final long staleNanos;
+    private final int maxSize;
+
+    private final ConcurrentHashMap<Key, CompletableFuture<Entry>> cache = new ConcurrentHashMap<>();
+    // guarded by itself
+    private final Set<Key> insertionOrder = new LinkedHashSet<>();
+    private final ExecutorService refresher;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder staleHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder loadNanos = new LongAdder();
+    private final LongAdder lookupNanos = new LongAdder();
+
+    public CachingPriceRetriever(PriceRetriever delegate, long ttlMillis, long staleMillis, int maxSize) {
+        this.delegate = delegate;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.staleNanos = TimeUnit.MILLISECONDS.toNanos(staleMillis);
+        this.maxSize = maxSize;
+
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(REFRESH_THREADS, REFRESH_THREADS, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(REFRESH_QUEUE), r -> {
+                    Thread t = new Thread(r, "PriceCache_Refresher");
+                    t.setDaemon(true);
+                    return t;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        this.refresher = executor;
+    }
+
+    @Override
+    public double getPrice(long itemId, long shopId) {
+        long start = System.nanoTime();
+
+        try {
+            return lookup(new Key(itemId, shopId));
+        } finally {
+            lookupNanos.add(System.nanoTime() - start);
+        }
+    }
+
+    // batches are used for bulk refreshes, they go straight to the shop
+    @Override
+    public double[] getPrices(long[] itemIds, long shopId) {
+        return delegate.getPrices(itemIds, shopId);
+    }
+
+    private double lookup(Key key) {
+        while (true) {
+            CompletableFuture<Entry> cached = cache.get(key);
+
+            if (cached == null) {
+                CompletableFuture<Entry> loading = new CompletableFuture<>();
+
+                if (insert(key, loading)) {
+                    misses.increment();
+                    return load(key, loading).price;
+                }
+                continue;
+            }
+
+            Entry entry;
+            try {
+                // a miss of the same key in progress, wait for it instead of loading again
+                entry = cached.get();
+            } catch (InterruptedException e) {
+                // the scheduler gave up on this request, no price
+                Thread.currentThread().interrupt();
+                return Double.NaN;
+            } catch (ExecutionException e) {
+                remove(key, cached);
+                continue;
+            }
+
+            long age = System.nanoTime() - entry.loadedAt;
+
+            if (age < ttlNanos) {
+                hits.increment();
+                return entry.price;
+            }
+
+            if (age < ttlNanos + staleNanos) {
+                staleHits.increment();
+                refreshInBackground(key, cached, entry);
+                return entry.price;
+            }
+
+            CompletableFuture<Entry> loading = new CompletableFuture<>();
+            if (cache.replace(key, cached, loading)) {
+                misses.increment();
+                return load(key, loading).price;
+            }
+        }
+    }
+
+    private Entry load(Key key, CompletableFuture<Entry> loading) {
+        long start = System.nanoTime();
+
+        try {
+            Entry entry = new Entry(delegate.getPrice(key.itemId, key.shopId), System.nanoTime());
+            loading.complete(entry);
+            return entry;
+        } catch (RuntimeException e) {
+            loading.completeExceptionally(e);
+            remove(key, loading);
+            throw e;
+        } finally {
+            loads.increment();
+            loadNanos.add(System.nanoTime() - start);
+        }
+    }
+
+    private void refreshInBackground(Key key, CompletableFuture<Entry> cached, Entry entry) {
+        if (!entry.isRefreshing.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            refresher.execute(() -> {
+                CompletableFuture<Entry> refreshed = new CompletableFuture<>();
+                try {
+                    load(key, refreshed);
+                    cache.replace(key, cached, refreshed);
+                } catch (RuntimeException e) {
+                    entry.isRefreshing.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // too many refreshes queued, a later lookup will try again
+            entry.isRefreshing.set(false);
+        }
+    }
+
+    private boolean insert(Key key, CompletableFuture<Entry> loading) {
+        synchronized (insertionOrder) {
+            if (cache.putIfAbsent(key, loading) != null) {
+                return false;
+            }
+            insertionOrder.add(key);
+
+            for (Iterator<Key> it = insertionOrder.iterator(); cache.size() > maxSize && it.hasNext(); ) {
+                Key oldest = it.next();
+                if (!oldest.equals(key)) {
+                    it.remove();
+                    cache.remove(oldest);
+                    evictions.increment();
+                }
+            }
+            return true;
+        }
+    }
+
+    private void remove(Key key, CompletableFuture<Entry> failed) {
+        synchronized (insertionOrder) {
+            if (cache.remove(key, failed)) {
+                insertionOrder.remove(key);
+            }
+        }
+    }
+
+    public double getHitRate() {
+        long found = hits.sum() + staleHits.sum();
+        long total = found + misses.sum();
+        return total == 0 ? 0 : (double) found / total;
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getStaleHitCount() {
+        return staleHits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    // calls to the delegate, misses and background refreshes together
+    public long getLoadCount() {
+        return loads.sum();
+    }
+
+    public double getAverageLoadMillis() {
+        long count = loads.sum();
+        return count == 0 ? 0 : loadNanos.sum() / 1e6 / count;
+    }
+
+    public double getAverageLookupMillis() {
+        long count = hits.sum() + staleHits.sum() + misses.sum();
+        return count == 0 ? 0 : lookupNanos.sum() / 1e6 / count;
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    public void shutdown() {
+        refresher.shutdownNow();
+    }
+
+    private static final class Key {
+        private final long itemId;
+        private final long shopId;
+
+        private Key(long itemId, long shopId) {
+            this.itemId = itemId;
+            this.shopId = shopId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return itemId == key.itemId && shopId == key.shopId;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Long.hashCode(itemId) + Long.hashCode(shopId);
+        }
+    }
+
+    private static final class Entry {
+        private final double price;
+        private final long loadedAt;
+        private final AtomicBoolean isRefreshing = new AtomicBoolean();
+
+        private Entry(double price, long loadedAt) {
+            this.price = price;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
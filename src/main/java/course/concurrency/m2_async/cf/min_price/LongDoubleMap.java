@@ -0,0 +1,68 @@
+package course.concurrency.m2_async.cf.min_price;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing {@code long -> double} map without boxing, filled once and read afterwards.
+ * {@link #get(long)} returns NaN for missing keys.
+ */
+public class LongDoubleMap {
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private final long[] keys;
+    private final double[] values;
+    private final boolean[] used;
+    private final int mask;
+    private int size;
+
+    public LongDoubleMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(2, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+        this.keys = new long[capacity];
+        this.values = new double[capacity];
+        this.used = new boolean[capacity];
+        this.mask = capacity - 1;
+        Arrays.fill(values, Double.NaN);
+    }
+
+    public void put(long key, double value) {
+        int index = indexOf(key);
+
+        if (!used[index]) {
+            if (size + 1 > keys.length * LOAD_FACTOR) {
+                throw new IllegalStateException("Map is full: " + size);
+            }
+            used[index] = true;
+            keys[index] = key;
+            size++;
+        }
+
+        values[index] = value;
+    }
+
+    public double get(long key) {
+        return values[indexOf(key)];
+    }
+
+    public boolean containsKey(long key) {
+        return used[indexOf(key)];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private int indexOf(long key) {
+        int index = mix(key) & mask;
+
+        while (used[index] && keys[index] != key) {
+            index = (index + 1) & mask;
+        }
+
+        return index;
+    }
+
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
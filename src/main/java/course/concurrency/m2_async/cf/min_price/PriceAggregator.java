@@ -1,12 +1,20 @@
 package course.concurrency.m2_async.cf.min_price;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Deque;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.DoubleConsumer;
 import java.util.stream.Collectors;
 
 public class PriceAggregator {
@@ -14,11 +22,51 @@ public class PriceAggregator {
     private static final long GAP_MILLIS = 5;
     private static final long SLA_MILLIS = LIMIT_MILLIS - GAP_MILLIS;
 
-    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private static final int DEFAULT_BATCH_SIZE = 1000;
+    private static final int DEFAULT_MAX_IN_FLIGHT_PER_SHOP = 4;
+    private static final int MAX_CONCURRENT_REQUESTS = 256;
+    private static final int MAX_CONCURRENT_REQUESTS_PER_SHOP = 32;
+    private static final double HEDGE_PERCENTILE = 0.95;
+    private static final int BREAKER_FAILURES = 5;
+    private static final long BREAKER_OPEN_MILLIS = 10_000;
+
+    private final PriceRequestScheduler scheduler;
+    private final ShopHealth shopHealth = new ShopHealth(SLA_MILLIS, BREAKER_FAILURES, BREAKER_OPEN_MILLIS);
     private PriceRetriever priceRetriever = new PriceRetriever();
+    private BatchPriceRetriever batchPriceRetriever = priceRetriever;
+
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private int maxInFlightPerShop = DEFAULT_MAX_IN_FLIGHT_PER_SHOP;
+
+    public PriceAggregator() {
+        this(new PriceRequestScheduler(SLA_MILLIS, MAX_CONCURRENT_REQUESTS, MAX_CONCURRENT_REQUESTS_PER_SHOP, false));
+    }
+
+    public PriceAggregator(PriceRequestScheduler scheduler) {
+        this.scheduler = scheduler;
+    }
 
     public void setPriceRetriever(PriceRetriever priceRetriever) {
         this.priceRetriever = priceRetriever;
+        this.batchPriceRetriever = priceRetriever;
+    }
+
+    public void setBatchPriceRetriever(BatchPriceRetriever batchPriceRetriever) {
+        this.batchPriceRetriever = batchPriceRetriever;
+    }
+
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+        this.batchSize = batchSize;
+    }
+
+    public void setMaxInFlightPerShop(int maxInFlightPerShop) {
+        if (maxInFlightPerShop < 1) {
+            throw new IllegalArgumentException("Max in-flight requests per shop must be positive: " + maxInFlightPerShop);
+        }
+        this.maxInFlightPerShop = maxInFlightPerShop;
     }
 
     private Collection<Long> shopIds = Set.of(10l, 45l, 66l, 345l, 234l, 333l, 67l, 123l, 768l);
@@ -29,10 +77,28 @@ public class PriceAggregator {
 
     public double getMinPrice(long itemId) {
         List<CompletableFuture<Double>> priceRequests = shopIds.stream()
-                .map(shopId -> CompletableFuture.supplyAsync(() -> priceRetriever.getPrice(itemId, shopId), executor)
-                        .completeOnTimeout(Double.NaN, SLA_MILLIS, TimeUnit.MILLISECONDS)
-                        .exceptionally(e -> Double.NaN)
-                )
+                .map(shopId -> scheduler.submit(shopId, () -> priceRetriever.getPrice(itemId, shopId), Double.NaN))
+                .collect(Collectors.toList());
+
+        return priceRequests.stream()
+                .map(CompletableFuture::join)
+                .filter(price -> price != null && !price.isNaN())
+                .min(Double::compareTo)
+                .orElse(Double.NaN);
+    }
+
+    /**
+     * Latency-aware version of {@link #getMinPrice(long)}. A shop that hasn't answered within its own
+     * p95 latency gets a hedged duplicate request and the first answer wins. The hedge is skipped
+     * while the shop already runs half its request limit or the scheduler has requests waiting,
+     * so hedges only use spare capacity. Shops that keep failing or timing out are skipped by their
+     * circuit breaker until it lets a probe through. Requests the scheduler rejects never reached
+     * the shop and don't count against it.
+     */
+    public double getMinPriceHedged(long itemId) {
+        List<CompletableFuture<Double>> priceRequests = shopIds.stream()
+                .filter(shopHealth::allowRequest)
+                .map(shopId -> getHedgedPrice(itemId, shopId).exceptionally(e -> Double.NaN))
                 .collect(Collectors.toList());
 
         return priceRequests.stream()
@@ -41,4 +107,287 @@ public class PriceAggregator {
                 .min(Double::compareTo)
                 .orElse(Double.NaN);
     }
+
+    private CompletableFuture<Double> getHedgedPrice(long itemId, long shopId) {
+        long start = System.currentTimeMillis();
+        long hedgeDelay = shopHealth.getPercentileMillis(shopId, HEDGE_PERCENTILE);
+        CompletableFuture<Double> result = new CompletableFuture<>();
+        AtomicInteger pending = new AtomicInteger(1);
+        // set once a request gets a thread, before that NaN can only mean a local rejection
+        AtomicBoolean isSent = new AtomicBoolean();
+
+        Runnable request = () -> scheduler.submit(shopId, () -> {
+                    isSent.set(true);
+                    return priceRetriever.getPrice(itemId, shopId);
+                }, Double.NaN)
+                .thenAccept(price -> {
+                    if (price != null && !price.isNaN()) {
+                        if (result.complete(price)) {
+                            shopHealth.recordSuccess(shopId, System.currentTimeMillis() - start);
+                        }
+                    } else if (pending.decrementAndGet() == 0) {
+                        result.complete(Double.NaN);
+                    }
+                });
+
+        request.run();
+
+        if (hedgeDelay >= 0 && hedgeDelay < SLA_MILLIS) {
+            pending.incrementAndGet();
+            CompletableFuture.delayedExecutor(hedgeDelay, TimeUnit.MILLISECONDS).execute(() -> {
+                if (result.isDone() || scheduler.isBusy(shopId)) {
+                    if (pending.decrementAndGet() == 0) {
+                        result.complete(Double.NaN);
+                    }
+                } else {
+                    request.run();
+                }
+            });
+        }
+
+        return result
+                .completeOnTimeout(Double.NaN, SLA_MILLIS, TimeUnit.MILLISECONDS)
+                .whenComplete((price, e) -> {
+                    if (e == null && !price.isNaN()) {
+                        return;
+                    }
+                    if (isSent.get()) {
+                        shopHealth.recordFailure(shopId, System.currentTimeMillis() - start);
+                    } else {
+                        shopHealth.recordRejected(shopId);
+                    }
+                });
+    }
+
+    public ShopHealth getShopHealth() {
+        return shopHealth;
+    }
+
+    /**
+     * Min prices for many items at once. Items are split into batches of {@code batchSize} and every
+     * shop gets at most {@code maxInFlightPerShop} batch requests at a time, so the number of tasks
+     * depends on the shop count rather than on the item count.
+     * <p>
+     * The SLA covers the whole call, not each item: it returns within one SLA however many items
+     * are asked for. A lane stops sending batches once the deadline has passed, so with many batches
+     * per shop the later ones are never sent. Items without any price in time are missing from the result.
+     */
+    public LongDoubleMap getMinPrices(Collection<Long> itemIds) {
+        long[] items = itemIds.stream().mapToLong(Long::longValue).distinct().toArray();
+        AtomicLongArray minPrices = new AtomicLongArray(items.length);
+        for (int i = 0; i < items.length; i++) {
+            minPrices.set(i, Double.doubleToRawLongBits(Double.NaN));
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(SLA_MILLIS);
+        int batchCount = (items.length + batchSize - 1) / batchSize;
+        int lanesPerShop = Math.min(maxInFlightPerShop, batchCount);
+
+        List<CompletableFuture<Void>> lanes = new ArrayList<>();
+        for (Long shopId : shopIds) {
+            AtomicInteger nextBatch = new AtomicInteger();
+            for (int lane = 0; lane < lanesPerShop; lane++) {
+                lanes.add(retrieveBatches(shopId, items, nextBatch, batchCount, deadline, minPrices));
+            }
+        }
+
+        try {
+            CompletableFuture.allOf(lanes.toArray(CompletableFuture[]::new))
+                    .get(SLA_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException ignored) {
+            // whatever has arrived by now is the result
+        }
+
+        LongDoubleMap result = new LongDoubleMap(items.length);
+        for (int i = 0; i < items.length; i++) {
+            double price = Double.longBitsToDouble(minPrices.get(i));
+            if (!Double.isNaN(price)) {
+                result.put(items[i], price);
+            }
+        }
+
+        return result;
+    }
+
+    // a lane sends the shop one batch after another, so a shop never has more requests than lanes
+    private CompletableFuture<Void> retrieveBatches(long shopId, long[] items, AtomicInteger nextBatch, int batchCount,
+                                                    long deadline, AtomicLongArray minPrices) {
+        int batch = nextBatch.getAndIncrement();
+
+        if (batch >= batchCount || System.nanoTime() >= deadline) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        int from = batch * batchSize;
+        int to = Math.min(from + batchSize, items.length);
+        long[] batchItems = Arrays.copyOfRange(items, from, to);
+
+        return scheduler.submit(shopId, () -> batchPriceRetriever.getPrices(batchItems, shopId), (double[]) null)
+                .thenCompose(prices -> {
+                    if (prices != null && System.nanoTime() < deadline) {
+                        for (int i = 0; i < prices.length && from + i < to; i++) {
+                            updateMin(minPrices, from + i, prices[i]);
+                        }
+                    }
+                    return retrieveBatches(shopId, items, nextBatch, batchCount, deadline, minPrices);
+                });
+    }
+
+    private static void updateMin(AtomicLongArray minPrices, int index, double price) {
+        if (Double.isNaN(price)) {
+            return;
+        }
+
+        long current;
+        do {
+            current = minPrices.get(index);
+            double currentPrice = Double.longBitsToDouble(current);
+
+            if (!Double.isNaN(currentPrice) && currentPrice <= price) {
+                return;
+            }
+        } while (!minPrices.compareAndSet(index, current, Double.doubleToRawLongBits(price)));
+    }
+
+    public PriceRequestScheduler getScheduler() {
+        return scheduler;
+    }
+
+    public void shutdown() {
+        scheduler.shutdown();
+    }
+
+    public CompletableFuture<Double> getMinPriceStream(long itemId, DoubleConsumer onImprovedMin) {
+        return getMinPriceStream(itemId, onImprovedMin, Double.NEGATIVE_INFINITY, shopIds.size());
+    }
+
+    /**
+     * Reports every improved minimum to {@code onImprovedMin} as soon as a shop answers.
+     * The returned future completes with the minimum found so far once it is {@code goodEnoughPrice}
+     * or lower, once {@code quorum} shops have answered, once all shops are done or at the SLA,
+     * whichever comes first. Improvements that arrive after that are not reported, and requests
+     * to shops that haven't answered yet are cancelled, so their threads are interrupted.
+     */
+    public CompletableFuture<Double> getMinPriceStream(long itemId, DoubleConsumer onImprovedMin,
+                                                       double goodEnoughPrice, int quorum) {
+        MinPriceStream stream = new MinPriceStream(onImprovedMin, goodEnoughPrice, quorum, shopIds.size());
+
+        List<CompletableFuture<Double>> priceRequests = shopIds.stream()
+                .map(shopId -> scheduler.submit(shopId, () -> priceRetriever.getPrice(itemId, shopId), Double.NaN))
+                .collect(Collectors.toList());
+        priceRequests.forEach(request -> request.thenAccept(stream::onPrice));
+
+        return stream.result
+                .completeOnTimeout(Double.NaN, SLA_MILLIS, TimeUnit.MILLISECONDS)
+                .thenApply(price -> {
+                    priceRequests.forEach(request -> request.cancel(true));
+                    return stream.finish();
+                });
+    }
+
+    private static class MinPriceStream {
+        private final CompletableFuture<Double> result = new CompletableFuture<>();
+        private final DoubleConsumer onImprovedMin;
+        private final double goodEnoughPrice;
+        private final int quorum;
+        private final int shopCount;
+
+        // guarded by this
+        private double min = Double.NaN;
+        private int answered;
+        private int responded;
+        private boolean isFinished;
+        private final Deque<Double> improvements = new ArrayDeque<>();
+        private boolean isReporting;
+
+        private MinPriceStream(DoubleConsumer onImprovedMin, double goodEnoughPrice, int quorum, int shopCount) {
+            this.onImprovedMin = onImprovedMin;
+            this.goodEnoughPrice = goodEnoughPrice;
+            this.quorum = quorum;
+            this.shopCount = shopCount;
+
+            if (shopCount == 0) {
+                result.complete(Double.NaN);
+            }
+        }
+
+        private void onPrice(Double price) {
+            boolean isDone;
+            synchronized (this) {
+                if (isFinished) {
+                    return;
+                }
+
+                answered++;
+
+                if (price != null && !price.isNaN()) {
+                    responded++;
+
+                    if (Double.isNaN(min) || price < min) {
+                        min = price;
+                        improvements.addLast(price);
+                    }
+                }
+
+                isDone = min <= goodEnoughPrice || responded >= quorum || answered == shopCount;
+            }
+
+            try {
+                report();
+            } finally {
+                if (isDone) {
+                    result.complete(min());
+                }
+            }
+        }
+
+        // one thread at a time calls back outside the lock, so improvements are reported in decreasing order;
+        // a failing callback goes to the uncaught exception handler and doesn't stop later reports
+        private void report() {
+            synchronized (this) {
+                if (isReporting) {
+                    return;
+                }
+                isReporting = true;
+            }
+
+            Double price = null;
+            try {
+                while (true) {
+                    synchronized (this) {
+                        price = isFinished ? null : improvements.pollFirst();
+                        if (price == null) {
+                            isReporting = false;
+                            return;
+                        }
+                    }
+                    try {
+                        onImprovedMin.accept(price);
+                    } catch (RuntimeException e) {
+                        Thread t = Thread.currentThread();
+                        t.getUncaughtExceptionHandler().uncaughtException(t, e);
+                    }
+                }
+            } finally {
+                if (price != null) {
+                    // left by an Error from the callback, let the next price report again
+                    synchronized (this) {
+                        isReporting = false;
+                    }
+                }
+            }
+        }
+
+        private synchronized double min() {
+            return min;
+        }
+
+        private synchronized double finish() {
+            isFinished = true;
+            improvements.clear();
+            return min;
+        }
+    }
 }
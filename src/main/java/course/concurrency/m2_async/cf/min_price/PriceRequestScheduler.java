@@ -0,0 +1,291 @@
+package course.concurrency.m2_async.cf.min_price;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Runs shop requests under an SLA with bounded concurrency.
+ * <p>
+ * A request starts right away if its shop and the whole scheduler are below their limits,
+ * otherwise it waits in a bounded FIFO queue. A thread that finishes a request takes the next
+ * waiting one that fits the limits, so queued requests don't need threads of their own.
+ * A request that can't start before its SLA, or finds the queue full, completes with the fallback
+ * value and counts as rejected. A request still running at the SLA completes with the fallback
+ * and its thread is interrupted, so slow shops can't pile up sleeping threads.
+ * Cancelling the returned future interrupts a running request the same way.
+ */
+public class PriceRequestScheduler {
+    private static final long KEEP_ALIVE_SECONDS = 60L;
+    private static final int QUEUED_PER_REQUEST = 4;
+
+    private final long slaMillis;
+    private final int maxConcurrent;
+    private final int maxConcurrentPerShop;
+    private final int maxQueued;
+    private final boolean isVirtual;
+
+    // guarded by this
+    private int running;
+    private final Map<Long, Integer> runningPerShop = new HashMap<>();
+    private final Deque<Request<?>> waiting = new ArrayDeque<>();
+
+    private final ExecutorService executor;
+    private final ScheduledThreadPoolExecutor timer;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    public PriceRequestScheduler(long slaMillis, int maxConcurrent, int maxConcurrentPerShop,
+                                 boolean useVirtualThreads) {
+        this(slaMillis, maxConcurrent, maxConcurrentPerShop, maxConcurrent * QUEUED_PER_REQUEST, useVirtualThreads);
+    }
+
+    public PriceRequestScheduler(long slaMillis, int maxConcurrent, int maxConcurrentPerShop, int maxQueued,
+                                 boolean useVirtualThreads) {
+        this.slaMillis = slaMillis;
+        this.maxConcurrent = maxConcurrent;
+        this.maxConcurrentPerShop = maxConcurrentPerShop;
+        this.maxQueued = maxQueued;
+
+        ExecutorService virtualExecutor = useVirtualThreads ? virtualThreadPerTaskExecutor() : null;
+        this.isVirtual = virtualExecutor != null;
+        // a thread that gave its request back may not be idle yet, hence room for twice the limit
+        this.executor = isVirtual ? virtualExecutor : new ThreadPoolExecutor(0, maxConcurrent * 2,
+                KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new SynchronousQueue<>(),
+                daemonThreads("PriceRequest"));
+
+        this.timer = new ScheduledThreadPoolExecutor(1, daemonThreads("PriceRequest_Timer"));
+        timer.setRemoveOnCancelPolicy(true);
+    }
+
+    public <T> CompletableFuture<T> submit(long shopId, Supplier<T> request, T fallback) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Request<T> r = new Request<>(shopId, result, fallback, new FutureTask<>(() -> {
+            try {
+                T value = request.get();
+                if (result.complete(value)) {
+                    completed.increment();
+                }
+            } catch (Exception e) {
+                if (result.complete(fallback)) {
+                    failed.increment();
+                }
+            }
+        }, null));
+
+        boolean isStarted;
+        synchronized (this) {
+            isStarted = tryAcquire(shopId);
+            if (isStarted) {
+                r.isStarted = true;
+            } else {
+                if (waiting.size() >= maxQueued) {
+                    waiting.removeIf(w -> w.result.isDone());
+                }
+                if (waiting.size() >= maxQueued) {
+                    rejected.increment();
+                    result.complete(fallback);
+                    return result;
+                }
+                waiting.addLast(r);
+            }
+        }
+
+        ScheduledFuture<?> timeout = timer.schedule(() -> {
+            if (result.complete(fallback)) {
+                if (r.isStarted) {
+                    timeouts.increment();
+                    r.task.cancel(true);
+                } else {
+                    rejected.increment();
+                }
+            }
+        }, slaMillis, TimeUnit.MILLISECONDS);
+        result.whenComplete((value, e) -> {
+            timeout.cancel(false);
+            // a caller that lost interest gets the thread back, a queued request is just dropped
+            if (result.isCancelled() && r.isStarted) {
+                r.task.cancel(true);
+            }
+        });
+
+        if (isStarted) {
+            start(r);
+        }
+
+        return result;
+    }
+
+    private void start(Request<?> request) {
+        inFlight.incrementAndGet();
+
+        try {
+            executor.execute(() -> work(request));
+        } catch (RejectedExecutionException e) {
+            // shut down
+            inFlight.decrementAndGet();
+            synchronized (this) {
+                release(request.shopId);
+            }
+            if (request.reject()) {
+                rejected.increment();
+            }
+        }
+    }
+
+    // runs the request, then waiting ones while there are any that fit the limits
+    private void work(Request<?> request) {
+        try {
+            while (request != null) {
+                // an interrupt left by the SLA of the previous request is not for this one
+                Thread.interrupted();
+                if (!request.result.isDone()) {
+                    request.task.run();
+                }
+                request = finish(request);
+            }
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    private synchronized Request<?> finish(Request<?> request) {
+        release(request.shopId);
+
+        for (Iterator<Request<?>> it = waiting.iterator(); it.hasNext(); ) {
+            Request<?> next = it.next();
+            if (next.result.isDone()) {
+                it.remove();
+            } else if (tryAcquire(next.shopId)) {
+                it.remove();
+                next.isStarted = true;
+                return next;
+            } else if (running >= maxConcurrent) {
+                return null;
+            }
+        }
+
+        return null;
+    }
+
+    private boolean tryAcquire(long shopId) {
+        int shopRunning = runningPerShop.getOrDefault(shopId, 0);
+        if (running >= maxConcurrent || shopRunning >= maxConcurrentPerShop) {
+            return false;
+        }
+        running++;
+        runningPerShop.put(shopId, shopRunning + 1);
+        return true;
+    }
+
+    private void release(long shopId) {
+        running--;
+        runningPerShop.computeIfPresent(shopId, (id, count) -> count == 1 ? null : count - 1);
+    }
+
+    // the shop runs at least half its limit, or requests are already waiting for a slot
+    public synchronized boolean isBusy(long shopId) {
+        return runningPerShop.getOrDefault(shopId, 0) * 2 >= maxConcurrentPerShop || !waiting.isEmpty();
+    }
+
+    public boolean isVirtual() {
+        return isVirtual;
+    }
+
+    // threads busy with requests, including interrupted ones that haven't returned yet
+    public int getInFlightCount() {
+        return inFlight.get();
+    }
+
+    public synchronized int getQueuedCount() {
+        return (int) waiting.stream().filter(r -> !r.result.isDone()).count();
+    }
+
+    public long getCompletedCount() {
+        return completed.sum();
+    }
+
+    public long getTimeoutCount() {
+        return timeouts.sum();
+    }
+
+    // requests that found the queue full or waited in it until the SLA
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    public long getFailedCount() {
+        return failed.sum();
+    }
+
+    public void shutdown() {
+        timer.shutdownNow();
+        executor.shutdownNow();
+
+        synchronized (this) {
+            for (Request<?> request : waiting) {
+                if (request.reject()) {
+                    rejected.increment();
+                }
+            }
+            waiting.clear();
+        }
+    }
+
+    private static final class Request<T> {
+        private final long shopId;
+        private final CompletableFuture<T> result;
+        private final T fallback;
+        private final FutureTask<Void> task;
+        // set under the scheduler lock once the request holds its permits
+        private volatile boolean isStarted;
+
+        private Request(long shopId, CompletableFuture<T> result, T fallback, FutureTask<Void> task) {
+            this.shopId = shopId;
+            this.result = result;
+            this.fallback = fallback;
+            this.task = task;
+        }
+
+        private boolean reject() {
+            return result.complete(fallback);
+        }
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        AtomicInteger counter = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, name + "_" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    private static ExecutorService virtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+}
@@ -2,7 +2,7 @@ package course.concurrency.m2_async.cf.min_price;
 
 import java.util.concurrent.ThreadLocalRandom;
 
-public class PriceRetriever {
+public class PriceRetriever implements BatchPriceRetriever {
 
     public double getPrice(long itemId, long shopId) {
         int delay = ThreadLocalRandom.current().nextInt(10);
@@ -10,6 +10,13 @@ public class PriceRetriever {
         return ThreadLocalRandom.current().nextDouble(1000);
     }
 
+    // one round trip for the whole batch
+    public double[] getPrices(long[] itemIds, long shopId) {
+        int delay = ThreadLocalRandom.current().nextInt(10);
+        sleep(delay);
+        return ThreadLocalRandom.current().doubles(itemIds.length, 0, 1000).toArray();
+    }
+
     private void sleep(int delay) {
         try { Thread.sleep(delay * 1000);
         } catch (InterruptedException e) {}
@@ -0,0 +1,153 @@
+package course.concurrency.m2_async.cf.min_price;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Latency histogram and circuit breaker per shop.
+ * <p>
+ * Latencies fall into {@link #BUCKET_MILLIS} wide buckets, counts are halved once a shop has
+ * {@link #MAX_SAMPLES} samples so that old answers fade away. Failures and timeouts are recorded
+ * with the time they took as well, otherwise a shop that often times out would look fast. A
+ * shop that fails or times out
+ * {@code failureThreshold} times in a row is left out for {@code openMillis}, then a single
+ * request probes it again. A request rejected locally, before it reached the shop, is neither
+ * a success nor a failure.
+ */
+public class ShopHealth {
+    private static final int BUCKET_MILLIS = 10;
+    private static final int MAX_SAMPLES = 10_000;
+    private static final int MIN_SAMPLES = 20;
+
+    private static final int CLOSED = 0;
+    private static final int OPEN = 1;
+    private static final int HALF_OPEN = 2;
+
+    private final int buckets;
+    private final int failureThreshold;
+    private final long openMillis;
+    private final Map<Long, Shop> shops = new ConcurrentHashMap<>();
+
+    public ShopHealth(long maxLatencyMillis, int failureThreshold, long openMillis) {
+        this.buckets = (int) (maxLatencyMillis / BUCKET_MILLIS) + 1;
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+    }
+
+    // false while the breaker of the shop is open
+    public boolean allowRequest(long shopId) {
+        Shop shop = shop(shopId);
+        int state = shop.state.get();
+
+        if (state == CLOSED) {
+            return true;
+        }
+
+        if (state == OPEN && System.currentTimeMillis() - shop.openedAt.get() >= openMillis) {
+            return shop.state.compareAndSet(OPEN, HALF_OPEN);
+        }
+
+        return false;
+    }
+
+    // a late answer to a request sent before the breaker opened doesn't close it, only a probe does
+    public void recordSuccess(long shopId, long latencyMillis) {
+        Shop shop = shop(shopId);
+        recordLatency(shop, latencyMillis);
+
+        int state = shop.state.get();
+        if (state == CLOSED) {
+            shop.failures.set(0);
+        } else if (state == HALF_OPEN && shop.state.compareAndSet(HALF_OPEN, CLOSED)) {
+            shop.failures.set(0);
+        }
+    }
+
+    public void recordFailure(long shopId, long latencyMillis) {
+        Shop shop = shop(shopId);
+        recordLatency(shop, latencyMillis);
+
+        if (shop.state.get() == HALF_OPEN || shop.failures.incrementAndGet() >= failureThreshold) {
+            shop.openedAt.set(System.currentTimeMillis());
+            shop.state.set(OPEN);
+            shop.failures.set(0);
+        }
+    }
+
+    // the request never reached the shop, so a probe is given back for the next request
+    public void recordRejected(long shopId) {
+        shop(shopId).state.compareAndSet(HALF_OPEN, OPEN);
+    }
+
+    // upper bound of the bucket holding the given percentile, -1 until there are enough samples
+    public long getPercentileMillis(long shopId, double percentile) {
+        Shop shop = shop(shopId);
+        long total = 0;
+
+        for (int i = 0; i < buckets; i++) {
+            total += shop.histogram.get(i);
+        }
+
+        if (total < MIN_SAMPLES) {
+            return -1;
+        }
+
+        long threshold = (long) Math.ceil(total * percentile);
+        long seen = 0;
+
+        for (int i = 0; i < buckets; i++) {
+            seen += shop.histogram.get(i);
+            if (seen >= threshold) {
+                return (long) (i + 1) * BUCKET_MILLIS;
+            }
+        }
+
+        return (long) buckets * BUCKET_MILLIS;
+    }
+
+    public boolean isOpen(long shopId) {
+        return shop(shopId).state.get() != CLOSED;
+    }
+
+    private void recordLatency(Shop shop, long latencyMillis) {
+        int bucket = (int) Math.min(latencyMillis / BUCKET_MILLIS, buckets - 1);
+
+        shop.histogram.incrementAndGet(bucket);
+        if (shop.samples.incrementAndGet() > MAX_SAMPLES) {
+            shop.decay();
+        }
+    }
+
+    private Shop shop(long shopId) {
+        Shop shop = shops.get(shopId);
+        return shop != null ? shop : shops.computeIfAbsent(shopId, id -> new Shop(buckets));
+    }
+
+    private static class Shop {
+        private final AtomicLongArray histogram;
+        private final AtomicInteger samples = new AtomicInteger();
+        private final AtomicInteger failures = new AtomicInteger();
+        private final AtomicInteger state = new AtomicInteger(CLOSED);
+        private final AtomicLong openedAt = new AtomicLong();
+
+        private Shop(int buckets) {
+            this.histogram = new AtomicLongArray(buckets);
+        }
+
+        // approximate under concurrent updates, which is fine for a percentile estimate
+        private void decay() {
+            long total = 0;
+
+            for (int i = 0; i < histogram.length(); i++) {
+                long halved = histogram.get(i) >> 1;
+                histogram.set(i, halved);
+                total += halved;
+            }
+
+            samples.set((int) total);
+        }
+    }
+}
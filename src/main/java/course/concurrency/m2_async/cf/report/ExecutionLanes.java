@@ -0,0 +1,176 @@
+package course.concurrency.m2_async.cf.report;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Separate pools for CPU-bound and blocking work.
+ * <p>
+ * Compute runs on a dedicated {@link ForkJoinPool} sized to the processors. Blocking calls run on
+ * virtual threads when the runtime has them, otherwise on a fixed pool of {@code maxIoThreads}
+ * threads that time out when idle. Tasks above that wait in the pool's unbounded queue, nothing
+ * is rejected. Neither lane touches {@link ForkJoinPool#commonPool()}, so parallel streams
+ * elsewhere in the JVM are not starved by sleeping report tasks.
+ * <p>
+ * {@link #shared()} lanes live as long as the JVM, like the common pool they ignore {@link #shutdown()}.
+ */
+public class ExecutionLanes {
+    private static final int DEFAULT_MAX_IO_THREADS = 256;
+    private static final long KEEP_ALIVE_SECONDS = 60;
+
+    private final Lane cpu;
+    private final Lane io;
+    private final boolean isShared;
+
+    public ExecutionLanes() {
+        this(DEFAULT_MAX_IO_THREADS, true);
+    }
+
+    public ExecutionLanes(int maxIoThreads, boolean useVirtualThreads) {
+        this(maxIoThreads, useVirtualThreads, false);
+    }
+
+    private ExecutionLanes(int maxIoThreads, boolean useVirtualThreads, boolean isShared) {
+        this.isShared = isShared;
+        int processors = Runtime.getRuntime().availableProcessors();
+        this.cpu = new Lane("cpu", new ForkJoinPool(processors), processors);
+
+        ExecutorService virtualExecutor = useVirtualThreads ? virtualThreadPerTaskExecutor() : null;
+        if (virtualExecutor != null) {
+            this.io = new Lane("io", virtualExecutor, maxIoThreads);
+        } else {
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(maxIoThreads, maxIoThreads,
+                    KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), daemonThreads("ReportIO"));
+            pool.allowCoreThreadTimeOut(true);
+            this.io = new Lane("io", pool, maxIoThreads);
+        }
+    }
+
+    /**
+     * Lanes over existing executors, e.g. the common pool for both to get the old behaviour.
+     */
+    public ExecutionLanes(ExecutorService cpu, int cpuThreads, ExecutorService io, int ioThreads) {
+        this.isShared = false;
+        this.cpu = new Lane("cpu", cpu, cpuThreads);
+        this.io = new Lane("io", io, ioThreads);
+    }
+
+    // created on first use, shared by every service that doesn't bring its own lanes
+    public static ExecutionLanes shared() {
+        return Shared.LANES;
+    }
+
+    public Lane cpu() {
+        return cpu;
+    }
+
+    public Lane io() {
+        return io;
+    }
+
+    public void shutdown() {
+        if (isShared) {
+            return;
+        }
+        cpu.executor.shutdown();
+        io.executor.shutdown();
+    }
+
+    @Override
+    public String toString() {
+        return cpu + ", " + io;
+    }
+
+    /**
+     * Executor that counts queued, running and busy time of its tasks.
+     */
+    public static class Lane implements Executor {
+        private final String name;
+        private final ExecutorService executor;
+        private final int threads;
+        private final long createdNanos = System.nanoTime();
+
+        private final LongAdder submitted = new LongAdder();
+        private final LongAdder started = new LongAdder();
+        private final LongAdder completed = new LongAdder();
+        private final LongAdder busyNanos = new LongAdder();
+        private final AtomicInteger active = new AtomicInteger();
+
+        private Lane(String name, ExecutorService executor, int threads) {
+            this.name = name;
+            this.executor = executor;
+            this.threads = threads;
+        }
+
+        @Override
+        public void execute(Runnable task) {
+            submitted.increment();
+            executor.execute(() -> {
+                started.increment();
+                active.incrementAndGet();
+                long start = System.nanoTime();
+                try {
+                    task.run();
+                } finally {
+                    busyNanos.add(System.nanoTime() - start);
+                    active.decrementAndGet();
+                    completed.increment();
+                }
+            });
+        }
+
+        // tasks submitted but not started yet
+        public long getQueueDepth() {
+            return submitted.sum() - started.sum();
+        }
+
+        public int getActiveCount() {
+            return active.get();
+        }
+
+        public long getCompletedCount() {
+            return completed.sum();
+        }
+
+        // busy time of all tasks relative to the time the lane's threads existed, 0..1
+        public double getUtilization() {
+            long elapsed = System.nanoTime() - createdNanos;
+            return elapsed == 0 ? 0 : Math.min(1.0, (double) busyNanos.sum() / elapsed / threads);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: queued %d, active %d, completed %d, utilization %.2f",
+                    name, getQueueDepth(), getActiveCount(), getCompletedCount(), getUtilization());
+        }
+    }
+
+    private static class Shared {
+        private static final ExecutionLanes LANES = new ExecutionLanes(DEFAULT_MAX_IO_THREADS, true, true);
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        AtomicInteger counter = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, name + "_" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    private static ExecutorService virtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+}
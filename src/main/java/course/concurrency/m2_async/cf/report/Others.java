@@ -2,7 +2,7 @@ package course.concurrency.m2_async.cf.report;
 
 public class Others {
 
-    static class Item {}
-    static class Customer {}
+    public static class Item {}
+    public static class Customer {}
     public static class Report {}
 }
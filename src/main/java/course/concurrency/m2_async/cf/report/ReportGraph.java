@@ -0,0 +1,228 @@
+package course.concurrency.m2_async.cf.report;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Report sections as a dependency graph.
+ * <p>
+ * Every node declares its inputs and is started as soon as they are ready, so independent
+ * sections run in parallel and a shared input is computed once per run no matter how many
+ * nodes read it. Nodes can only depend on nodes declared before them, which keeps the graph
+ * acyclic. Each run measures node timings and reports the critical path.
+ */
+public class ReportGraph {
+
+    private final List<Node<?>> nodes;
+
+    private ReportGraph(List<Node<?>> nodes) {
+        this.nodes = nodes;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public Execution run(Executor executor) {
+        return execute(executor).join();
+    }
+
+    public CompletableFuture<Execution> execute(Executor executor) {
+        Execution execution = new Execution(nodes);
+        List<CompletableFuture<?>> futures = new ArrayList<>(nodes.size());
+
+        for (Node<?> node : nodes) {
+            futures.add(start(node, futures, execution, executor));
+        }
+
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]))
+                .thenApply(ignored -> execution.finish());
+    }
+
+    private <T> CompletableFuture<T> start(Node<T> node, List<CompletableFuture<?>> futures,
+                                           Execution execution, Executor executor) {
+        Supplier<T> task = () -> {
+            execution.started(node);
+            T value = node.compute.apply(execution);
+            execution.finished(node, value);
+            return value;
+        };
+
+        if (node.inputs.isEmpty()) {
+            return CompletableFuture.supplyAsync(task, node.executor != null ? node.executor : executor);
+        }
+
+        CompletableFuture<?>[] inputs = new CompletableFuture<?>[node.inputs.size()];
+        for (int i = 0; i < inputs.length; i++) {
+            inputs[i] = futures.get(node.inputs.get(i).index);
+        }
+
+        return CompletableFuture.allOf(inputs)
+                .thenApplyAsync(ignored -> task.get(), node.executor != null ? node.executor : executor);
+    }
+
+    public static class Node<T> {
+        private final String name;
+        private final int index;
+        private final List<Node<?>> inputs;
+        private final Function<Execution, T> compute;
+        private final Executor executor;
+
+        private Node(String name, int index, List<Node<?>> inputs, Function<Execution, T> compute, Executor executor) {
+            this.name = name;
+            this.index = index;
+            this.inputs = inputs;
+            this.compute = compute;
+            this.executor = executor;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public List<Node<?>> getInputs() {
+            return inputs;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    public static class Builder {
+        private final List<Node<?>> nodes = new ArrayList<>();
+
+        public <T> Node<T> node(String name, Supplier<T> compute) {
+            return node(name, results -> compute.get());
+        }
+
+        /**
+         * @param compute reads values of the inputs through {@link Execution#get(Node)}
+         */
+        public <T> Node<T> node(String name, Function<Execution, T> compute, Node<?>... inputs) {
+            return node(name, null, compute, inputs);
+        }
+
+        /**
+         * @param executor runs this node instead of the executor of the run, e.g. a lane of {@link ExecutionLanes}
+         */
+        public <T> Node<T> node(String name, Executor executor, Function<Execution, T> compute, Node<?>... inputs) {
+            for (Node<?> input : inputs) {
+                if (input.index >= nodes.size() || nodes.get(input.index) != input) {
+                    throw new IllegalArgumentException("Unknown input " + input + " of " + name);
+                }
+            }
+
+            Node<T> node = new Node<>(name, nodes.size(), List.of(inputs), compute, executor);
+            nodes.add(node);
+            return node;
+        }
+
+        public ReportGraph build() {
+            if (nodes.isEmpty()) {
+                throw new IllegalStateException("Graph has no nodes");
+            }
+            return new ReportGraph(List.copyOf(nodes));
+        }
+    }
+
+    /**
+     * Values and timings of a single run.
+     */
+    public static class Execution {
+        private final List<Node<?>> nodes;
+        private final Object[] values;
+        private final AtomicLongArray startNanos;
+        private final AtomicLongArray endNanos;
+        private final long createdNanos = System.nanoTime();
+        private volatile long finishedNanos;
+
+        private Execution(List<Node<?>> nodes) {
+            this.nodes = nodes;
+            this.values = new Object[nodes.size()];
+            this.startNanos = new AtomicLongArray(nodes.size());
+            this.endNanos = new AtomicLongArray(nodes.size());
+        }
+
+        // inputs are published to dependants through the completion of their futures
+        @SuppressWarnings("unchecked")
+        public <T> T get(Node<T> node) {
+            return (T) values[node.index];
+        }
+
+        public long getDurationMillis(Node<?> node) {
+            return (endNanos.get(node.index) - startNanos.get(node.index)) / 1_000_000;
+        }
+
+        public long getWallMillis() {
+            return (finishedNanos - createdNanos) / 1_000_000;
+        }
+
+        /**
+         * Chain of nodes that finished last: starting from the last finished node, each step goes
+         * to the input that finished last, since that input was what the node was waiting for.
+         */
+        public List<Node<?>> getCriticalPath() {
+            Node<?> current = nodes.get(0);
+            for (Node<?> node : nodes) {
+                if (endNanos.get(node.index) > endNanos.get(current.index)) {
+                    current = node;
+                }
+            }
+
+            List<Node<?>> path = new ArrayList<>();
+            while (current != null) {
+                path.add(current);
+                Node<?> latest = null;
+                for (Node<?> input : current.inputs) {
+                    if (latest == null || endNanos.get(input.index) > endNanos.get(latest.index)) {
+                        latest = input;
+                    }
+                }
+                current = latest;
+            }
+
+            Collections.reverse(path);
+            return path;
+        }
+
+        public long getCriticalPathMillis() {
+            long total = 0;
+            for (Node<?> node : getCriticalPath()) {
+                total += getDurationMillis(node);
+            }
+            return total;
+        }
+
+        public Map<String, Long> getDurations() {
+            Map<String, Long> durations = new LinkedHashMap<>();
+            for (Node<?> node : nodes) {
+                durations.put(node.name, getDurationMillis(node));
+            }
+            return durations;
+        }
+
+        private void started(Node<?> node) {
+            startNanos.set(node.index, System.nanoTime());
+        }
+
+        private void finished(Node<?> node, Object value) {
+            values[node.index] = value;
+            endNanos.set(node.index, System.nanoTime());
+        }
+
+        private Execution finish() {
+            finishedNanos = System.nanoTime();
+            return this;
+        }
+    }
+}
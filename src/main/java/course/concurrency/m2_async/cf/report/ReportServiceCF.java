@@ -1,31 +1,69 @@
 package course.concurrency.m2_async.cf.report;
 
 import course.concurrency.m2_async.cf.LoadGenerator;
+import course.concurrency.m2_async.cf.report.ReportGraph.Node;
 
 import java.util.Collection;
 import java.util.List;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.ForkJoinPool;
 
+/**
+ * Blocking sections run on the io lane, combining results on the cpu lane.
+ * Concurrent getReport() calls share one report in flight, items and customers
+ * are reused while they are younger than {@code freshnessMillis}.
+ * Without lanes of its own the service runs on {@link ExecutionLanes#shared()},
+ * so creating many services doesn't create pools.
+ */
 public class ReportServiceCF {
 
-    private ExecutorService executor = ForkJoinPool.commonPool();
+    private final ExecutionLanes lanes;
 
     private LoadGenerator loadGenerator = new LoadGenerator();
 
+    private final ReportGraph graph;
+    private final Node<Others.Report> report;
+
+    private final VersionedCache<Collection<Others.Item>> itemsCache;
+    private final VersionedCache<Collection<Others.Customer>> customersCache;
+    private final VersionedCache<Others.Report> reportFlight;
+
+    public ReportServiceCF() {
+        this(ExecutionLanes.shared());
+    }
+
+    public ReportServiceCF(ExecutionLanes lanes) {
+        this(lanes, 0);
+    }
+
+    public ReportServiceCF(ExecutionLanes lanes, long freshnessMillis) {
+        this.lanes = lanes;
+        this.itemsCache = new VersionedCache<>(this::getItems, freshnessMillis);
+        this.customersCache = new VersionedCache<>(this::getActiveCustomers, freshnessMillis);
+
+        ReportGraph.Builder builder = ReportGraph.builder();
+        Node<Collection<Others.Item>> items = builder.node("items", lanes.io(), results -> itemsCache.get());
+        Node<Collection<Others.Customer>> customers = builder.node("customers", lanes.io(),
+                results -> customersCache.get());
+        this.report = builder.node("report", lanes.cpu(),
+                results -> combineResults(results.get(items), results.get(customers)), items, customers);
+        this.graph = builder.build();
+        this.reportFlight = new VersionedCache<>(() -> graph.run(lanes.cpu()).get(report), 0);
+    }
+
     public Others.Report getReport() {
-        CompletableFuture<Collection<Others.Item>> itemsCF =
-                CompletableFuture.supplyAsync(() -> getItems(), executor);
+        return reportFlight.get();
+    }
 
-        CompletableFuture<Collection<Others.Customer>> customersCF =
-                CompletableFuture.supplyAsync(() -> getActiveCustomers(), executor);
+    public void invalidate() {
+        itemsCache.invalidate();
+        customersCache.invalidate();
+    }
 
-        CompletableFuture<Others.Report> reportTask =
-                customersCF.thenCombine(itemsCF,
-                        (customers, orders) -> combineResults(orders, customers));
+    public VersionedCache<Others.Report> getReportFlight() {
+        return reportFlight;
+    }
 
-        return reportTask.join();
+    public ExecutionLanes getLanes() {
+        return lanes;
     }
 
     private Others.Report combineResults(Collection<Others.Item> items, Collection<Others.Customer> customers) {
@@ -43,7 +81,8 @@ public class ReportServiceCF {
         return List.of(new Others.Item(), new Others.Item());
     }
 
+    // the shared lanes stay up
     public void shutdown() {
-        executor.shutdown();
+        lanes.shutdown();
     }
 }
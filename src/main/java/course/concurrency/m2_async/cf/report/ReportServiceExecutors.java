@@ -4,43 +4,88 @@ import course.concurrency.m2_async.cf.LoadGenerator;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 
+/**
+ * Concurrent getReport() calls share one report in flight, items and customers are reused
+ * while they are younger than {@code freshnessMillis}, the same way as in {@link ReportServiceCF}.
+ */
 public class ReportServiceExecutors {
 
-    private ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final ExecutorService executor;
 
     private LoadGenerator loadGenerator = new LoadGenerator();
 
+    private final VersionedCache<Collection<Others.Item>> itemsCache;
+    private final VersionedCache<Collection<Others.Customer>> customersCache;
+    private final VersionedCache<Others.Report> reportFlight;
+
+    public ReportServiceExecutors() {
+        this(Executors.newSingleThreadExecutor());
+    }
+
+    public ReportServiceExecutors(ExecutorService executor) {
+        this(executor, 0);
+    }
+
+    public ReportServiceExecutors(ExecutorService executor, long freshnessMillis) {
+        this.executor = executor;
+        this.itemsCache = new VersionedCache<>(this::getItems, freshnessMillis);
+        this.customersCache = new VersionedCache<>(this::getActiveCustomers, freshnessMillis);
+        this.reportFlight = new VersionedCache<>(this::buildReport, 0);
+    }
+
     public Others.Report getReport() {
+        return reportFlight.get();
+    }
+
+    public void invalidate() {
+        itemsCache.invalidate();
+        customersCache.invalidate();
+    }
+
+    public VersionedCache<Others.Report> getReportFlight() {
+        return reportFlight;
+    }
+
+    private Others.Report buildReport() {
         Future<Collection<Others.Item>> iFuture =
-                executor.submit(() -> getItems());
+                executor.submit(() -> itemsCache.get());
         Future<Collection<Others.Customer>> customersFuture =
-                executor.submit(() -> getActiveCustomers());
+                executor.submit(() -> customersCache.get());
 
         try {
             Collection<Others.Customer> customers = customersFuture.get();
             Collection<Others.Item> items = iFuture.get();
             return combineResults(items, customers);
-        } catch (ExecutionException | InterruptedException ex) {}
-
-        return new Others.Report();
+        } catch (ExecutionException ex) {
+            iFuture.cancel(true);
+            customersFuture.cancel(true);
+            throw VersionedCache.asCompletionException(ex.getCause());
+        } catch (InterruptedException ex) {
+            iFuture.cancel(true);
+            customersFuture.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while waiting for report");
+        }
     }
 
     private Others.Report combineResults(Collection<Others.Item> items, Collection<Others.Customer> customers) {
         return new Others.Report();
     }
 
-    private Collection<Others.Customer> getActiveCustomers() {
+    protected Collection<Others.Customer> getActiveCustomers() {
         loadGenerator.work();
         loadGenerator.work();
         return List.of(new Others.Customer(), new Others.Customer());
     }
 
-    private Collection<Others.Item> getItems() {
+    protected Collection<Others.Item> getItems() {
         loadGenerator.work();
         return List.of(new Others.Item(), new Others.Item());
     }
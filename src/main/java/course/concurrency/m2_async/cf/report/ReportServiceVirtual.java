@@ -4,48 +4,169 @@ import course.concurrency.m2_async.cf.LoadGenerator;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Subtasks run on virtual threads when the runtime has them, otherwise on a pool of at most
+ * {@link #MAX_PLATFORM_THREADS} threads that time out when idle. Subtasks above that wait in
+ * the pool's queue, the deadline still covers them.
+ * <p>
+ * Subtasks are joined in the style of a structured task scope that shuts down on failure:
+ * the first failed subtask or the deadline cancels the siblings that are still running,
+ * and the report fails with a {@link CompletionException} instead of an empty report.
+ * <p>
+ * Concurrent getReport() calls share one report in flight, items and customers are reused
+ * while they are younger than {@code freshnessMillis}, the same way as in {@link ReportServiceCF}.
+ */
 public class ReportServiceVirtual {
 
-//    private ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
-//
-//    private LoadGenerator loadGenerator = new LoadGenerator();
-//
-//    public Others.Report getReport() {
-//        Future<Collection<Others.Item>> iFuture =
-//                executor.submit(() -> getItems());
-//        Future<Collection<Others.Customer>> customersFuture =
-//                executor.submit(() -> getActiveCustomers());
-//
-//        try {
-//            Collection<Others.Customer> customers = customersFuture.get();
-//            Collection<Others.Item> items = iFuture.get();
-//            return combineResults(items, customers);
-//        } catch (ExecutionException | InterruptedException ex) {}
-//
-//        return new Others.Report();
-//    }
-//
-//    private Others.Report combineResults(Collection<Others.Item> items, Collection<Others.Customer> customers) {
-//        return new Others.Report();
-//    }
-//
-//    private Collection<Others.Customer> getActiveCustomers() {
-//        loadGenerator.work();
-//        loadGenerator.work();
-//        return List.of(new Others.Customer(), new Others.Customer());
-//    }
-//
-//    private Collection<Others.Item> getItems() {
-//        loadGenerator.work();
-//        return List.of(new Others.Item(), new Others.Item());
-//    }
-//
-//    public void shutdown() {
-//        executor.shutdown();
-//    }
+    private static final long DEFAULT_DEADLINE_MILLIS = 10_000;
+    private static final int MAX_PLATFORM_THREADS = 256;
+    private static final long KEEP_ALIVE_SECONDS = 60;
+
+    private final ExecutorService executor;
+    private final boolean isVirtual;
+    private final long deadlineMillis;
+
+    private LoadGenerator loadGenerator = new LoadGenerator();
+
+    private final VersionedCache<Collection<Others.Item>> itemsCache;
+    private final VersionedCache<Collection<Others.Customer>> customersCache;
+    private final VersionedCache<Others.Report> reportFlight;
+
+    public ReportServiceVirtual() {
+        this(DEFAULT_DEADLINE_MILLIS);
+    }
+
+    public ReportServiceVirtual(long deadlineMillis) {
+        this(deadlineMillis, 0);
+    }
+
+    public ReportServiceVirtual(long deadlineMillis, long freshnessMillis) {
+        ExecutorService virtualExecutor = virtualThreadPerTaskExecutor();
+        this.isVirtual = virtualExecutor != null;
+        this.executor = isVirtual ? virtualExecutor : platformExecutor();
+        this.deadlineMillis = deadlineMillis;
+        this.itemsCache = new VersionedCache<>(this::getItems, freshnessMillis);
+        this.customersCache = new VersionedCache<>(this::getActiveCustomers, freshnessMillis);
+        this.reportFlight = new VersionedCache<>(this::buildReport, 0);
+    }
+
+    // callers that join a report in flight wait no longer than the deadline of its first caller
+    public Others.Report getReport() {
+        return reportFlight.get();
+    }
+
+    public void invalidate() {
+        itemsCache.invalidate();
+        customersCache.invalidate();
+    }
+
+    public VersionedCache<Others.Report> getReportFlight() {
+        return reportFlight;
+    }
+
+    private Others.Report buildReport() {
+        ExecutorCompletionService<Object> scope = new ExecutorCompletionService<>(executor);
+        Future<Object> iFuture = scope.submit(() -> itemsCache.get());
+        Future<Object> customersFuture = scope.submit(() -> customersCache.get());
+
+        join(scope, 2, iFuture, customersFuture);
+
+        return combineResults(resultOf(iFuture), resultOf(customersFuture));
+    }
+
+    private void join(ExecutorCompletionService<Object> scope, int count, Future<?>... subtasks) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(deadlineMillis);
+
+        try {
+            for (int i = 0; i < count; i++) {
+                Future<Object> done = scope.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                if (done == null) {
+                    throw new CompletionException(new TimeoutException("Report is not ready in " + deadlineMillis + "ms"));
+                }
+                done.get();
+            }
+        } catch (ExecutionException e) {
+            cancelAll(subtasks);
+            throw VersionedCache.asCompletionException(e.getCause());
+        } catch (InterruptedException e) {
+            cancelAll(subtasks);
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while waiting for report");
+        } catch (CompletionException e) {
+            cancelAll(subtasks);
+            throw e;
+        }
+    }
+
+    private static void cancelAll(Future<?>... subtasks) {
+        for (Future<?> subtask : subtasks) {
+            subtask.cancel(true);
+        }
+    }
+
+    // only called for subtasks that have already completed successfully
+    @SuppressWarnings("unchecked")
+    private static <T> T resultOf(Future<Object> subtask) {
+        try {
+            return (T) subtask.get();
+        } catch (InterruptedException | ExecutionException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Others.Report combineResults(Collection<Others.Item> items, Collection<Others.Customer> customers) {
+        return new Others.Report();
+    }
+
+    protected Collection<Others.Customer> getActiveCustomers() {
+        loadGenerator.work();
+        loadGenerator.work();
+        return List.of(new Others.Customer(), new Others.Customer());
+    }
+
+    protected Collection<Others.Item> getItems() {
+        loadGenerator.work();
+        return List.of(new Others.Item(), new Others.Item());
+    }
+
+    public boolean isVirtual() {
+        return isVirtual;
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private static ExecutorService platformExecutor() {
+        AtomicInteger counter = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(MAX_PLATFORM_THREADS, MAX_PLATFORM_THREADS,
+                KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+                    Thread t = new Thread(r, "Report_" + counter.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private static ExecutorService virtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
 }
@@ -0,0 +1,171 @@
+package course.concurrency.m2_async.cf.report;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Single value cache with single-flight loading.
+ * <p>
+ * A value younger than {@code freshnessMillis} is returned as is. Otherwise the first caller
+ * loads a new version and everyone who comes while the load is in flight waits for the same
+ * result, so concurrent callers pay for one load. Zero freshness keeps only the coalescing.
+ * A failed load fails all callers that waited for it, the next call tries again.
+ * {@link #invalidate()} starts a new epoch: a load that began before it still answers its own
+ * callers, but its value is never served as fresh afterwards.
+ */
+public class VersionedCache<T> {
+
+    private final Supplier<T> loader;
+    private final long freshnessNanos;
+
+    private final AtomicReference<Versioned<T>> current = new AtomicReference<>();
+    private final AtomicReference<Flight<T>> inFlight = new AtomicReference<>();
+    private final AtomicLong version = new AtomicLong();
+    // bumped by invalidate(), values and loads of an older epoch are not reused
+    private final AtomicLong epoch = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    public VersionedCache(Supplier<T> loader, long freshnessMillis) {
+        this.loader = loader;
+        this.freshnessNanos = TimeUnit.MILLISECONDS.toNanos(freshnessMillis);
+    }
+
+    public T get() {
+        return getVersioned().getValue();
+    }
+
+    // a caller interrupted while waiting for someone else's load gets a CancellationException
+    public Versioned<T> getVersioned() {
+        Versioned<T> cached = current.get();
+        if (isFresh(cached)) {
+            hits.increment();
+            return cached;
+        }
+
+        while (true) {
+            long currentEpoch = epoch.get();
+            Flight<T> flight = inFlight.get();
+            if (flight != null && flight.epoch == currentEpoch) {
+                coalesced.increment();
+                return await(flight.result);
+            }
+
+            // a load started before invalidate() finishes for its own callers, but nobody new joins it
+            Flight<T> mine = new Flight<>(currentEpoch);
+            if (inFlight.compareAndSet(flight, mine)) {
+                return load(mine);
+            }
+        }
+    }
+
+    private Versioned<T> load(Flight<T> flight) {
+        try {
+            // a load may have finished between the freshness check and winning the flight
+            Versioned<T> cached = current.get();
+            if (isFresh(cached)) {
+                hits.increment();
+                flight.result.complete(cached);
+            } else {
+                loads.increment();
+                Versioned<T> loaded = new Versioned<>(loader.get(), version.incrementAndGet(), System.nanoTime(),
+                        flight.epoch);
+                current.accumulateAndGet(loaded, (old, next) -> newer(old, next));
+                flight.result.complete(loaded);
+            }
+        } catch (Throwable e) {
+            flight.result.completeExceptionally(e);
+        } finally {
+            inFlight.compareAndSet(flight, null);
+        }
+        return await(flight.result);
+    }
+
+    // a slow load of an old epoch doesn't replace what a later one has stored
+    private static <T> Versioned<T> newer(Versioned<T> old, Versioned<T> next) {
+        return old != null && old.epoch > next.epoch ? old : next;
+    }
+
+    private static <T> Versioned<T> await(CompletableFuture<Versioned<T>> result) {
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while waiting for load");
+        } catch (ExecutionException e) {
+            throw asCompletionException(e.getCause());
+        }
+    }
+
+    // a failed load reaches its callers as a CompletionException already, it isn't wrapped twice
+    static CompletionException asCompletionException(Throwable e) {
+        return e instanceof CompletionException ? (CompletionException) e : new CompletionException(e);
+    }
+
+    // next call loads a new version, a load that started before is not cached and not shared with it
+    public void invalidate() {
+        epoch.incrementAndGet();
+        current.set(null);
+    }
+
+    private boolean isFresh(Versioned<T> versioned) {
+        return versioned != null && versioned.epoch == epoch.get()
+                && System.nanoTime() - versioned.loadedAt < freshnessNanos;
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getLoadCount() {
+        return loads.sum();
+    }
+
+    public long getCoalescedCount() {
+        return coalesced.sum();
+    }
+
+    private static final class Flight<T> {
+        private final CompletableFuture<Versioned<T>> result = new CompletableFuture<>();
+        private final long epoch;
+
+        private Flight(long epoch) {
+            this.epoch = epoch;
+        }
+    }
+
+    public static class Versioned<T> {
+        private final T value;
+        private final long version;
+        private final long loadedAt;
+        private final long epoch;
+
+        private Versioned(T value, long version, long loadedAt, long epoch) {
+            this.value = value;
+            this.version = version;
+            this.loadedAt = loadedAt;
+            this.epoch = epoch;
+        }
+
+        public T getValue() {
+            return value;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public long getAgeMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - loadedAt);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package course.concurrency.m3_shared.collections;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Count-Min sketch: approximate counts of any number of keys in {@code depth * width} counters.
+ * <p>
+ * An estimate is never lower than the real count and exceeds it by at most
+ * {@code e * total / width} with probability {@code 1 - e^-depth}.
+ * Rows are updated with separate atomic increments, so an estimate read during
+ * an update may already include it in some rows and not in others.
+ */
+public class CountMinSketch {
+
+    private final int depth;
+    private final int mask;
+    private final AtomicLongArray table;
+
+    public CountMinSketch(int depth, int width) {
+        if (depth < 1 || width < 1 || Integer.bitCount(width) != 1) {
+            throw new IllegalArgumentException("Depth must be positive and width a power of two");
+        }
+        this.depth = depth;
+        this.mask = width - 1;
+        this.table = new AtomicLongArray(depth * width);
+    }
+
+    /**
+     * @return estimate of the key count including this increment
+     */
+    public long add(String key) {
+        int hash = key.hashCode();
+        int h1 = spread(hash);
+        int h2 = spread(h1) | 1;
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            long count = table.incrementAndGet(index(row, h1 + row * h2));
+            estimate = Math.min(estimate, count);
+        }
+        return estimate;
+    }
+
+    public long estimate(String key) {
+        int hash = key.hashCode();
+        int h1 = spread(hash);
+        int h2 = spread(h1) | 1;
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, table.get(index(row, h1 + row * h2)));
+        }
+        return estimate;
+    }
+
+    private int index(int row, int hash) {
+        return row * (mask + 1) + (hash & mask);
+    }
+
+    // murmur3 finalizer, String.hashCode alone is too regular for the low bits
+    private static int spread(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
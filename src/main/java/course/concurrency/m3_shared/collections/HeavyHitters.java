@@ -0,0 +1,84 @@
+package course.concurrency.m3_shared.collections;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Top-K keys by count with Space-Saving eviction: once all {@code k} entries are taken,
+ * a new key replaces the one with the lowest count.
+ * <p>
+ * Counts come from a {@link CountMinSketch} instead of being kept here, so a key is only
+ * offered when its estimate beats the current minimum. That check is a volatile read,
+ * the lock is taken only by keys that can get into the top.
+ */
+public class HeavyHitters {
+
+    private final String[] keys;
+    private final long[] counts;
+    private int size;
+
+    // lowest count in the top once it is full, keys at or below it are not offered
+    private volatile long threshold;
+
+    public HeavyHitters(int k) {
+        this.keys = new String[k];
+        this.counts = new long[k];
+    }
+
+    public void offer(String key, long estimate) {
+        if (estimate <= threshold) {
+            return;
+        }
+        synchronized (this) {
+            int min = 0;
+            for (int i = 0; i < size; i++) {
+                if (keys[i].equals(key)) {
+                    counts[i] = Math.max(counts[i], estimate);
+                    updateThreshold();
+                    return;
+                }
+                if (counts[i] < counts[min]) {
+                    min = i;
+                }
+            }
+            if (size < keys.length) {
+                min = size++;
+            } else if (estimate <= counts[min]) {
+                return;
+            }
+            keys[min] = key;
+            counts[min] = estimate;
+            updateThreshold();
+        }
+    }
+
+    /**
+     * @return keys with their estimated counts, highest first
+     */
+    public synchronized Map<String, Long> snapshot() {
+        Map<String, Long> top = new LinkedHashMap<>();
+        boolean[] taken = new boolean[size];
+        for (int n = 0; n < size; n++) {
+            int max = -1;
+            for (int i = 0; i < size; i++) {
+                if (!taken[i] && (max < 0 || counts[i] > counts[max])) {
+                    max = i;
+                }
+            }
+            taken[max] = true;
+            top.put(keys[max], counts[max]);
+        }
+        return top;
+    }
+
+    private void updateThreshold() {
+        if (size < keys.length) {
+            return;
+        }
+        long min = Long.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            min = Math.min(min, counts[i]);
+        }
+        threshold = min;
+    }
+}
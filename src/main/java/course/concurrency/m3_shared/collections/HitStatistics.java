@@ -0,0 +1,110 @@
+package course.concurrency.m3_shared.collections;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Hit counters for a fixed set of names.
+ * <p>
+ * Every name gets a slot once, callers keep the slot and count with {@link #increment(int)}:
+ * no hashing and no allocation per hit. Callers that already number their names from 0 to
+ * {@code capacity - 1} may use those numbers as slots and never register. Counters are striped by thread, each stripe is its own
+ * region of the array padded to a cache line, so threads on different stripes don't share lines.
+ * Sums are read without locking and may miss increments that are in progress.
+ */
+public class HitStatistics {
+    private static final int LONGS_PER_LINE = 8;
+
+    private final int capacity;
+    private final int stripeMask;
+    private final int stripeLength;
+    private final AtomicLongArray counters;
+
+    private final Map<String, Integer> slots = new ConcurrentHashMap<>();
+    private int size;
+
+    public HitStatistics(int capacity) {
+        this(capacity, Runtime.getRuntime().availableProcessors() * 2);
+    }
+
+    public HitStatistics(int capacity, int stripes) {
+        this.capacity = capacity;
+        int stripeCount = Integer.highestOneBit(Math.max(1, Math.min(stripes, 64) - 1)) << 1;
+        this.stripeMask = stripeCount - 1;
+        // round up to whole cache lines, plus one line so neighbouring stripes never share one
+        this.stripeLength = ((capacity + LONGS_PER_LINE - 1) / LONGS_PER_LINE + 1) * LONGS_PER_LINE;
+        this.counters = new AtomicLongArray(stripeCount * stripeLength);
+    }
+
+    /**
+     * @return slot of the name, the same one for repeated calls
+     */
+    public int register(String name) {
+        int slot = tryRegister(name);
+        if (slot < 0) {
+            throw new IllegalStateException("No free slots for " + name);
+        }
+        return slot;
+    }
+
+    /**
+     * @return slot of the name, or -1 if it isn't registered and all slots are taken
+     */
+    public synchronized int tryRegister(String name) {
+        Integer slot = slots.get(name);
+        if (slot != null) {
+            return slot;
+        }
+        if (size == capacity) {
+            return -1;
+        }
+        slots.put(name, size);
+        return size++;
+    }
+
+    // -1 if the name isn't registered
+    public int slotOf(String name) {
+        Integer slot = slots.get(name);
+        return slot == null ? -1 : slot;
+    }
+
+    /**
+     * @return count of the slot in the stripe of the current thread before the increment
+     */
+    public long increment(int slot) {
+        int stripe = (int) Thread.currentThread().getId() & stripeMask;
+        return counters.getAndIncrement(stripe * stripeLength + slot);
+    }
+
+    /**
+     * Adds to the count of the slot, e.g. a count taken over from other statistics.
+     */
+    public void add(int slot, long delta) {
+        int stripe = (int) Thread.currentThread().getId() & stripeMask;
+        counters.getAndAdd(stripe * stripeLength + slot, delta);
+    }
+
+    public long sum(int slot) {
+        long sum = 0;
+        for (int stripe = 0; stripe <= stripeMask; stripe++) {
+            sum += counters.get(stripe * stripeLength + slot);
+        }
+        return sum;
+    }
+
+    /**
+     * Counts of names that were hit at least once.
+     */
+    public Map<String, Long> snapshot() {
+        Map<String, Long> snapshot = new HashMap<>();
+        for (Map.Entry<String, Integer> entry : slots.entrySet()) {
+            long sum = sum(entry.getValue());
+            if (sum > 0) {
+                snapshot.put(entry.getKey(), sum);
+            }
+        }
+        return snapshot;
+    }
+}
@@ -1,12 +1,59 @@
 package course.concurrency.m3_shared.collections;
 
+import java.nio.charset.StandardCharsets;
+
 public class Restaurant {
     private String name;
+    // UTF-8 name in the byte array shared by a RestaurantRegistry snapshot, used when name is null
+    private final byte[] names;
+    private final int offset;
+    private final int length;
+    // counters of the catalog and the slot there, set before the restaurant is published
+    private HitStatistics stats;
+    private int statSlot = -1;
+
     public Restaurant(String name) {
         this.name = name;
+        this.names = null;
+        this.offset = 0;
+        this.length = 0;
+    }
+
+    Restaurant(byte[] names, int offset, int length) {
+        this.names = names;
+        this.offset = offset;
+        this.length = length;
     }
 
+    /**
+     * A restaurant of a registry snapshot decodes its name on the first call and keeps it.
+     */
     public String getName() {
-        return name;
+        String decoded = name;
+        if (decoded == null) {
+            // racing callers decode the same immutable String, either copy may stay
+            decoded = new String(names, offset, length, StandardCharsets.UTF_8);
+            name = decoded;
+        }
+        return decoded;
+    }
+
+    // the name without keeping it, for callers that walk a whole catalog
+    String readName() {
+        String decoded = name;
+        return decoded != null ? decoded : new String(names, offset, length, StandardCharsets.UTF_8);
+    }
+
+    HitStatistics getStats() {
+        return stats;
+    }
+
+    int getStatSlot() {
+        return statSlot;
+    }
+
+    void setStatSlot(HitStatistics stats, int statSlot) {
+        this.stats = stats;
+        this.statSlot = statSlot;
     }
 }
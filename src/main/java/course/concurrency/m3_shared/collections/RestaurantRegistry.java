@@ -0,0 +1,183 @@
+package course.concurrency.m3_shared.collections;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.function.Consumer;
+
+/**
+ * Read-mostly restaurant catalog.
+ * <p>
+ * Readers go through one volatile read to an immutable {@link Snapshot}, a reload builds
+ * a new snapshot aside and swaps it in with one write, so a lookup sees either the old
+ * catalog or the new one and never blocks.
+ */
+public class RestaurantRegistry {
+
+    private volatile Snapshot snapshot;
+
+    public RestaurantRegistry(Collection<String> names) {
+        this(build(names));
+    }
+
+    public RestaurantRegistry(Snapshot snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    public Restaurant get(String name) {
+        return snapshot.get(name);
+    }
+
+    public int size() {
+        return snapshot.size();
+    }
+
+    public Snapshot snapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Replaces the whole catalog.
+     */
+    public void reload(Collection<String> names) {
+        publish(build(names));
+    }
+
+    public void publish(Snapshot snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    /**
+     * Builds a snapshot without publishing it, duplicate names are added once.
+     */
+    public static Snapshot build(Collection<String> names) {
+        return new Snapshot(names);
+    }
+
+    /**
+     * Open-addressed table, at most half full. Each cell holds the name hash in the high half and
+     * the position of the restaurant record plus one in the low half. Records are packed into one
+     * byte array shared by all restaurants of the snapshot: restaurant index, name length and
+     * the UTF-8 name, so a probe reads the cell and then a single record.
+     */
+    public static final class Snapshot {
+        private static final int HEADER = 8;
+        private static final VarHandle INT = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.nativeOrder());
+
+        private final long[] table;
+        private final byte[] records;
+        private final Restaurant[] restaurants;
+
+        private Snapshot(Collection<String> source) {
+            int capacity = Integer.highestOneBit(Math.max(2, source.size() * 2 - 1)) << 1;
+            long[] table = new long[capacity];
+            byte[] records = new byte[Math.max(64, source.size() * 24)];
+            int[] positions = new int[source.size()];
+            int size = 0;
+            int length = 0;
+
+            for (String name : source) {
+                int hash = spread(name.hashCode());
+                int index = find(table, records, hash, name);
+                if (table[index] != 0) {
+                    continue;
+                }
+                byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+                if (length + HEADER + bytes.length > records.length) {
+                    records = Arrays.copyOf(records, Math.max(records.length * 2, length + HEADER + bytes.length));
+                }
+                writeInt(records, length, size);
+                writeInt(records, length + 4, bytes.length);
+                System.arraycopy(bytes, 0, records, length + HEADER, bytes.length);
+                positions[size++] = length;
+                table[index] = (long) hash << 32 | (length + 1);
+                length += HEADER + bytes.length;
+            }
+
+            this.table = table;
+            this.records = Arrays.copyOf(records, length);
+            this.restaurants = new Restaurant[size];
+            for (int i = 0; i < size; i++) {
+                int position = positions[i];
+                restaurants[i] = new Restaurant(this.records, position + HEADER, readInt(this.records, position + 4));
+            }
+        }
+
+        public Restaurant get(String name) {
+            int cell = (int) table[find(table, records, spread(name.hashCode()), name)];
+            return cell == 0 ? null : restaurants[readInt(records, cell - 1)];
+        }
+
+        public int size() {
+            return restaurants.length;
+        }
+
+        /**
+         * @param index from 0 to size - 1, in the order the names were first added
+         */
+        public Restaurant at(int index) {
+            return restaurants[index];
+        }
+
+        public void forEach(Consumer<Restaurant> action) {
+            for (Restaurant restaurant : restaurants) {
+                action.accept(restaurant);
+            }
+        }
+
+        // cell of the name, or the empty cell where it would go
+        private static int find(long[] table, byte[] records, int hash, String name) {
+            int mask = table.length - 1;
+            int index = hash & mask;
+            while (true) {
+                long cell = table[index];
+                if (cell == 0) {
+                    return index;
+                }
+                int position = (int) cell - 1;
+                if ((int) (cell >>> 32) == hash
+                        && matches(records, position + HEADER, readInt(records, position + 4), name)) {
+                    return index;
+                }
+                index = (index + 1) & mask;
+            }
+        }
+
+        // compares ASCII in place, encodes the name only if it has other characters
+        private static boolean matches(byte[] records, int offset, int length, String name) {
+            int chars = name.length();
+            if (length < chars) {
+                return false;
+            }
+            for (int i = 0; i < chars; i++) {
+                char c = name.charAt(i);
+                if (c >= 0x80) {
+                    byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+                    return Arrays.equals(records, offset, offset + length, bytes, 0, bytes.length);
+                }
+                if (records[offset + i] != c) {
+                    return false;
+                }
+            }
+            return length == chars;
+        }
+
+        private static int readInt(byte[] bytes, int position) {
+            return (int) INT.get(bytes, position);
+        }
+
+        private static void writeInt(byte[] bytes, int position, int value) {
+            INT.set(bytes, position, value);
+        }
+
+        private static int spread(int h) {
+            h ^= h >>> 16;
+            h *= 0x85ebca6b;
+            h ^= h >>> 13;
+            return h;
+        }
+    }
+}
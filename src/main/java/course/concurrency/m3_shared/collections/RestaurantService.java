@@ -1,5 +1,8 @@
 package course.concurrency.m3_shared.collections;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
@@ -8,27 +11,329 @@ import java.util.stream.Collectors;
 
 public class RestaurantService {
 
-    private final Map<String, Restaurant> restaurantMap = new ConcurrentHashMap<>() {{
-        put("A", new Restaurant("A"));
-        put("B", new Restaurant("B"));
-        put("C", new Restaurant("C"));
-    }};
+    /**
+     * EXACT counts every queried name, unknown ones included, so the statistics grow with
+     * the number of distinct names. BOUNDED counts known restaurants exactly and unknown names
+     * in a Count-Min sketch, reports only the heaviest of them and keeps per-second rates of
+     * all unknown names together and of the most looked up restaurants; its memory is one counter
+     * per restaurant of the catalog, the rest is fixed.
+     */
+    public enum StatMode { EXACT, BOUNDED }
 
+    private static final int SKETCH_DEPTH = 4;
+    private static final int SKETCH_WIDTH = 1 << 14;
+    private static final int TOP_MISSES = 16;
+    private static final int TOP_RATES = 16;
+    private static final int RATE_WINDOW_SECONDS = 60;
+
+    // big catalogs get fewer counter stripes, so that all stripes together stay within 8MB
+    private static final int MAX_STAT_COUNTERS = 1 << 20;
+    private static final int MISS_KEY = 0;
+
+    private final StatMode mode;
+    private final RestaurantRegistry registry;
+
+    // counters of the published catalog, the slot of a restaurant is its index in the snapshot
+    private volatile Stats stats;
+    // EXACT mode only: unknown names and restaurants that left the catalog
     private final Map<String, LongAdder> stat = new ConcurrentHashMap<>();
 
+    private final CountMinSketch missSketch;
+    private final HeavyHitters topMisses;
+    private final HitStatistics misses = new HitStatistics(1);
+
+    public RestaurantService() {
+        this(StatMode.EXACT);
+    }
+
+    public RestaurantService(StatMode mode) {
+        this(mode, List.of("A", "B", "C"));
+    }
+
+    public RestaurantService(StatMode mode, Collection<String> restaurantNames) {
+        this.mode = mode;
+        if (mode == StatMode.BOUNDED) {
+            missSketch = new CountMinSketch(SKETCH_DEPTH, SKETCH_WIDTH);
+            topMisses = new HeavyHitters(TOP_MISSES);
+            misses.register("");
+        } else {
+            missSketch = null;
+            topMisses = null;
+        }
+
+        RestaurantRegistry.Snapshot snapshot = RestaurantRegistry.build(restaurantNames);
+        stats = new Stats(snapshot, null);
+        registry = new RestaurantRegistry(snapshot);
+    }
+
     public Restaurant getByName(String restaurantName) {
-        addToStat(restaurantName);
-        return restaurantMap.get(restaurantName);
+        Restaurant restaurant = registry.get(restaurantName);
+        if (restaurant != null) {
+            long before = restaurant.getStats().increment(restaurant.getStatSlot());
+            // a restaurant is offered for a rate when a count of its stripe reaches a power of two
+            if (mode == StatMode.BOUNDED && (before & (before + 1)) == 0) {
+                offerRate(restaurant);
+            }
+        } else {
+            addToStat(restaurantName);
+        }
+        return restaurant;
+    }
+
+    /**
+     * Replaces the catalog at once, lookups see either the old or the new one.
+     * <p>
+     * Counters are rebuilt for the new catalog. Counts and rates of restaurants that stay carry over;
+     * restaurants that leave keep their counts by name in EXACT mode and are dropped in BOUNDED mode.
+     * A lookup that found the old catalog and counts only after the reload has finished is lost.
+     */
+    public synchronized void reload(Collection<String> restaurantNames) {
+        RestaurantRegistry.Snapshot snapshot = RestaurantRegistry.build(restaurantNames);
+        Stats previous = stats;
+        Stats next = new Stats(snapshot, previous);
+        registry.publish(snapshot);
+        stats = next;
+
+        // lookups that found the old catalog may have counted there since it was copied
+        next.catchUp(previous);
+        if (mode == StatMode.EXACT) {
+            for (int slot = 0; slot < previous.snapshot.size(); slot++) {
+                long count = previous.hits.sum(slot);
+                if (count == 0) {
+                    continue;
+                }
+                String name = previous.snapshot.at(slot).readName();
+                if (snapshot.get(name) == null) {
+                    stat.computeIfAbsent(name, n -> new LongAdder()).add(count);
+                }
+            }
+        }
+    }
+
+    private void offerRate(Restaurant restaurant) {
+        Stats current = stats;
+        // a lookup that found the other catalog during a reload is not offered
+        if (current.hits == restaurant.getStats()) {
+            current.offerRate(restaurant.getStatSlot());
+        }
     }
 
     public void addToStat(String restaurantName) {
-        stat.computeIfAbsent(restaurantName, name -> new LongAdder()).increment();
+        if (mode == StatMode.BOUNDED) {
+            misses.increment(0);
+            topMisses.offer(restaurantName, missSketch.add(restaurantName));
+        } else {
+            stat.computeIfAbsent(restaurantName, name -> new LongAdder()).increment();
+        }
     }
 
+    /**
+     * In BOUNDED mode unknown names are reported only if they are among the heaviest,
+     * with estimated counts.
+     */
     public Set<String> printStat() {
-        return stat.entrySet()
+        Stats current = stats;
+        Map<String, Long> counts = new HashMap<>();
+        for (int slot = 0; slot < current.snapshot.size(); slot++) {
+            long count = current.hits.sum(slot);
+            if (count > 0) {
+                counts.put(current.snapshot.at(slot).readName(), count);
+            }
+        }
+        if (mode == StatMode.BOUNDED) {
+            topMisses.snapshot().forEach((name, count) -> counts.merge(name, count, Long::sum));
+        } else {
+            stat.forEach((name, count) -> counts.merge(name, count.sum(), Long::sum));
+        }
+
+        return counts.entrySet()
                 .stream()
-                .map(entry -> entry.getKey() + " - " + entry.getValue().sum())
+                .map(entry -> entry.getKey() + " - " + entry.getValue())
                 .collect(Collectors.toSet());
     }
+
+    /**
+     * @return estimated counts of the most queried unknown names, highest first; BOUNDED mode only
+     */
+    public Map<String, Long> getTopMisses() {
+        checkBounded();
+        return topMisses.snapshot();
+    }
+
+    /**
+     * Rates are sampled on read, at most once a second, so a window covers the seconds in which
+     * some rate was read. Only the {@link #TOP_RATES} most looked up restaurants have a rate, the
+     * window of a restaurant starts when it gets into that top.
+     *
+     * @return lookups per second of the restaurant over up to the last minute, 0 for a restaurant
+     * outside the top; BOUNDED mode only
+     */
+    public double getRate(String restaurantName) {
+        checkBounded();
+        Stats current = stats;
+        Restaurant restaurant = current.snapshot.get(restaurantName);
+        int key = restaurant == null ? -1 : current.rateKeyOf(restaurant.getStatSlot());
+        return key < 0 ? 0 : current.rates.rate(key);
+    }
+
+    /**
+     * @return lookups per second of unknown names over up to the last minute; BOUNDED mode only
+     */
+    public double getMissRate() {
+        checkBounded();
+        return stats.rates.rate(MISS_KEY);
+    }
+
+    private void checkBounded() {
+        if (mode != StatMode.BOUNDED) {
+            throw new IllegalStateException("Available in BOUNDED mode only");
+        }
+    }
+
+    /**
+     * Counters of one catalog, the slot of a restaurant is its index in the snapshot, so there is
+     * nothing per restaurant besides its counters. Restaurants keep a reference to the counters
+     * of their catalog, so a lookup racing with a reload never counts in a slot of the other one.
+     */
+    private final class Stats {
+        private final RestaurantRegistry.Snapshot snapshot;
+        private final HitStatistics hits;
+        // key 0 for all unknown names, key i + 1 for the restaurant in rateSlots[i]; BOUNDED mode only
+        private final SlidingWindowCounter rates;
+        // the most looked up restaurants with the counts they were offered with, Space-Saving eviction
+        private final int[] rateSlots;
+        private final long[] rateCounts;
+        private int rateSize;
+        // lowest count in the top once it is full, counts at or below it are not offered
+        private volatile long rateThreshold;
+        // per slot, the slot of the restaurant in the previous counters or -1, and the count taken
+        // from there; only a reload has them, until catchUp()
+        private int[] previousSlots;
+        private long[] carried;
+
+        private Stats(RestaurantRegistry.Snapshot snapshot, Stats previous) {
+            int size = snapshot.size();
+            int stripes = Runtime.getRuntime().availableProcessors() * 2;
+            this.snapshot = snapshot;
+            hits = new HitStatistics(size, Math.max(1, Math.min(stripes, MAX_STAT_COUNTERS / Math.max(1, size))));
+            if (previous != null) {
+                previousSlots = new int[size];
+                carried = new long[size];
+            }
+
+            for (int slot = 0; slot < size; slot++) {
+                Restaurant restaurant = snapshot.at(slot);
+                if (previous != null) {
+                    Restaurant before = previous.snapshot.get(restaurant.readName());
+                    previousSlots[slot] = before == null ? -1 : before.getStatSlot();
+                    if (before != null) {
+                        carried[slot] = previous.hits.sum(before.getStatSlot());
+                        hits.add(slot, carried[slot]);
+                    }
+                }
+                restaurant.setStatSlot(hits, slot);
+            }
+
+            if (mode == StatMode.BOUNDED) {
+                rateSlots = new int[TOP_RATES];
+                rateCounts = new long[TOP_RATES];
+                rates = new SlidingWindowCounter(TOP_RATES + 1, RATE_WINDOW_SECONDS,
+                        key -> key == MISS_KEY ? misses.sum(0) : rateTotal(key - 1));
+                if (previous == null) {
+                    // the first window starts now, not with the first read
+                    rates.sample();
+                } else {
+                    // restaurants of the top that stay keep their windows, the rest of the keys are free
+                    int[] previousKeys = previous.carryTopTo(this);
+                    rates.carryOver(previous.rates, key -> key == MISS_KEY ? MISS_KEY
+                            : key - 1 < rateSize ? previousKeys[key - 1] + 1 : -1);
+                }
+            } else {
+                rateSlots = null;
+                rateCounts = null;
+                rates = null;
+            }
+        }
+
+        // fills the top of the next counters with the restaurants of this top that stay,
+        // returns the index each of them had here
+        private synchronized int[] carryTopTo(Stats next) {
+            int[] previousKeys = new int[rateSize];
+            for (int i = 0; i < rateSize; i++) {
+                Restaurant stays = next.snapshot.get(snapshot.at(rateSlots[i]).readName());
+                if (stays != null) {
+                    previousKeys[next.rateSize] = i;
+                    next.rateSlots[next.rateSize] = stays.getStatSlot();
+                    next.rateCounts[next.rateSize++] = rateCounts[i];
+                }
+            }
+            next.updateRateThreshold();
+            return previousKeys;
+        }
+
+        private void offerRate(int slot) {
+            long count = hits.sum(slot);
+            if (count <= rateThreshold) {
+                return;
+            }
+            synchronized (this) {
+                int min = 0;
+                for (int i = 0; i < rateSize; i++) {
+                    if (rateSlots[i] == slot) {
+                        rateCounts[i] = Math.max(rateCounts[i], count);
+                        updateRateThreshold();
+                        return;
+                    }
+                    if (rateCounts[i] < rateCounts[min]) {
+                        min = i;
+                    }
+                }
+                if (rateSize < TOP_RATES) {
+                    min = rateSize++;
+                } else if (count <= rateCounts[min]) {
+                    return;
+                }
+                rateSlots[min] = slot;
+                rateCounts[min] = count;
+                updateRateThreshold();
+                rates.restart(min + 1);
+            }
+        }
+
+        // rate key of the slot, -1 if the restaurant is not in the top
+        private synchronized int rateKeyOf(int slot) {
+            for (int i = 0; i < rateSize; i++) {
+                if (rateSlots[i] == slot) {
+                    return i + 1;
+                }
+            }
+            return -1;
+        }
+
+        private synchronized long rateTotal(int index) {
+            return index < rateSize ? hits.sum(rateSlots[index]) : 0;
+        }
+
+        private void updateRateThreshold() {
+            if (rateSize < TOP_RATES) {
+                return;
+            }
+            long min = Long.MAX_VALUE;
+            for (int i = 0; i < rateSize; i++) {
+                min = Math.min(min, rateCounts[i]);
+            }
+            rateThreshold = min;
+        }
+
+        // adds what was counted in the previous counters after the copy
+        private void catchUp(Stats previous) {
+            for (int slot = 0; slot < previousSlots.length; slot++) {
+                if (previousSlots[slot] >= 0) {
+                    hits.add(slot, previous.hits.sum(previousSlots[slot]) - carried[slot]);
+                }
+            }
+            previousSlots = null;
+            carried = null;
+        }
+    }
 }
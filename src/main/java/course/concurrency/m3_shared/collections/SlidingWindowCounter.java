@@ -0,0 +1,137 @@
+package course.concurrency.m3_shared.collections;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.IntToLongFunction;
+import java.util.function.IntUnaryOperator;
+import java.util.function.LongSupplier;
+
+/**
+ * Per-second rates over the last {@code seconds} seconds for a fixed number of keys.
+ * <p>
+ * Counting stays with the caller, this keeps a ring of per-second samples of the running
+ * totals, and a rate is the growth of a total since the oldest sample in the window.
+ * A sample reads the totals of every key, so it is taken by readers: {@link #rate(int)}
+ * samples at most once a second, callers that want a steady window may also call {@link #sample()}
+ * from a timer. Counting threads never pay for it.
+ * <p>
+ * A key may be handed over to another total with {@link #restart(int)}, its older samples are
+ * then ignored, so a few keys can follow whichever totals are of interest at the moment.
+ */
+public class SlidingWindowCounter {
+
+    private final int keys;
+    private final int seconds;
+    private final IntToLongFunction totals;
+    private final LongSupplier clock;
+
+    private final AtomicLongArray samples;
+    private final AtomicLongArray epochs;
+    // per key, the first second whose sample belongs to the current total of the key
+    private final AtomicLongArray since;
+    private final AtomicLong lastSecond = new AtomicLong(-1);
+
+    public SlidingWindowCounter(int keys, int seconds, IntToLongFunction totals) {
+        this(keys, seconds, totals, System::currentTimeMillis);
+    }
+
+    SlidingWindowCounter(int keys, int seconds, IntToLongFunction totals, LongSupplier clock) {
+        this.keys = keys;
+        this.seconds = seconds;
+        this.totals = totals;
+        this.clock = clock;
+        this.samples = new AtomicLongArray(keys * seconds);
+        this.epochs = new AtomicLongArray(seconds);
+        this.since = new AtomicLongArray(keys);
+        for (int i = 0; i < seconds; i++) {
+            epochs.set(i, -1);
+        }
+    }
+
+    /**
+     * Records the totals if no sample was taken in the current second yet.
+     */
+    public void sample() {
+        long second = clock.getAsLong() / 1000;
+        long last = lastSecond.get();
+        if (last >= second || !lastSecond.compareAndSet(last, second)) {
+            return;
+        }
+        int bucket = (int) (second % seconds);
+        // readers skip the bucket while it is being rewritten
+        epochs.set(bucket, -1);
+        for (int k = 0; k < keys; k++) {
+            samples.set(bucket * keys + k, totals.applyAsLong(k));
+        }
+        epochs.set(bucket, second);
+    }
+
+    /**
+     * The key now stands for a different total: its window starts again with a sample taken now.
+     * Call it after the total of the key has switched.
+     */
+    public void restart(int key) {
+        sample();
+        long second = clock.getAsLong() / 1000;
+        int bucket = (int) (second % seconds);
+        if (epochs.get(bucket) == second) {
+            // the sample of this second is complete, so no one overwrites it with the old total
+            samples.set(bucket * keys + key, totals.applyAsLong(key));
+            since.set(key, second);
+        } else {
+            // someone else is still sampling this second and may have read the old total
+            since.set(key, second + 1);
+        }
+    }
+
+    /**
+     * Takes over the samples of the counter this one replaces, before it is used. Key {@code k}
+     * continues key {@code previousKey(k)} there, whose total it must go on from; -1 means a key
+     * that starts from zero. Both counters cover the same number of seconds.
+     */
+    public void carryOver(SlidingWindowCounter previous, IntUnaryOperator previousKey) {
+        int[] from = new int[keys];
+        for (int k = 0; k < keys; k++) {
+            from[k] = previousKey.applyAsInt(k);
+            since.set(k, from[k] < 0 ? 0 : previous.since.get(from[k]));
+        }
+        lastSecond.set(previous.lastSecond.get());
+        for (int bucket = 0; bucket < seconds; bucket++) {
+            long epoch = previous.epochs.get(bucket);
+            for (int k = 0; k < keys; k++) {
+                samples.set(bucket * keys + k, from[k] < 0 ? 0 : previous.samples.get(bucket * previous.keys + from[k]));
+            }
+            // a bucket rewritten meanwhile stays skipped
+            epochs.set(bucket, previous.epochs.get(bucket) == epoch ? epoch : -1);
+        }
+    }
+
+    /**
+     * @return average events per second for the key since the oldest sample in the window
+     */
+    public double rate(int key) {
+        sample();
+        long second = clock.getAsLong() / 1000;
+        long first = Math.max(second - seconds + 1, since.get(key));
+        while (true) {
+            int oldest = -1;
+            long oldestEpoch = 0;
+            for (int bucket = 0; bucket < seconds; bucket++) {
+                long epoch = epochs.get(bucket);
+                if (epoch >= first && (oldest < 0 || epoch < oldestEpoch)) {
+                    oldest = bucket;
+                    oldestEpoch = epoch;
+                }
+            }
+            if (oldest < 0) {
+                return 0;
+            }
+            long total = totals.applyAsLong(key);
+            long sample = samples.get(oldest * keys + key);
+            // the bucket may have been rewritten for a newer second meanwhile, then look again
+            if (epochs.get(oldest) == oldestEpoch) {
+                return (double) (total - sample) / Math.max(1, second - oldestEpoch);
+            }
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package course.concurrency.exams.auction;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares boxed {@link Bid} proposals with the primitive {@code propose(long, long, long)} overload.
+ * Most bids in a bidding war lose, so the reject path is measured: the auction holds a bid
+ * higher than any proposed price. Run with GC profiler to see allocation rate (gc.alloc.rate.norm).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(4)
+public class AuctionBenchmarks {
+
+    private static final long TOP_PRICE = 1_000_000_000L;
+
+    @Param({"optimistic", "pessimistic"})
+    private String type;
+
+    private Notifier notifier;
+    private Auction auction;
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(AuctionBenchmarks.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .warmupIterations(3)
+                .measurementIterations(5)
+                .forks(1)
+                .build();
+
+        new Runner(opt).run();
+    }
+
+    @Setup
+    public void setup() {
+        notifier = new Notifier();
+        auction = "optimistic".equals(type) ? new AuctionOptimistic(notifier) : new AuctionPessimistic(notifier);
+        auction.propose(TOP_PRICE, TOP_PRICE, TOP_PRICE);
+    }
+
+    @TearDown
+    public void tearDown() {
+        notifier.shutdown();
+    }
+
+    // the wrappers mirror what the Long-based Bid allocated per proposal
+    @Benchmark
+    public boolean boxed() {
+        long value = ThreadLocalRandom.current().nextLong(TOP_PRICE);
+        return auction.propose(new Bid(Long.valueOf(value), Long.valueOf(value), Long.valueOf(value)));
+    }
+
+    @Benchmark
+    public boolean primitive() {
+        long value = ThreadLocalRandom.current().nextLong(TOP_PRICE);
+        return auction.propose(value, value, value);
+    }
+}
@@ -0,0 +1,71 @@
+package course.concurrency.exams.auction;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bidding war on a single lot with one thread per core, as in {@code AuctionTests}.
+ * Prices follow the clock with some jitter, so most proposals narrowly lose to a bid
+ * that has just landed. Notifications are disabled to measure only the auction.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(Threads.MAX)
+public class AuctionContentionBenchmarks {
+
+    private static final int JITTER = 1_000;
+
+    @Param({"optimistic", "pessimistic", "adaptive"})
+    private String type;
+
+    private Notifier notifier;
+    private Auction auction;
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(AuctionContentionBenchmarks.class.getSimpleName())
+                .warmupIterations(3)
+                .measurementIterations(5)
+                .forks(1)
+                .build();
+
+        new Runner(opt).run();
+    }
+
+    @Setup
+    public void setup() {
+        notifier = new Notifier() {
+            @Override
+            public void sendOutdatedMessage(Bid bid) {}
+        };
+
+        switch (type) {
+            case "optimistic":
+                auction = new AuctionOptimistic(notifier);
+                break;
+            case "pessimistic":
+                auction = new AuctionPessimistic(notifier);
+                break;
+            default:
+                auction = new AuctionAdaptive(notifier);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        notifier.shutdown();
+    }
+
+    @Benchmark
+    public boolean propose() {
+        long price = System.nanoTime() + ThreadLocalRandom.current().nextInt(-JITTER, JITTER);
+        return auction.propose(price, price, price);
+    }
+}
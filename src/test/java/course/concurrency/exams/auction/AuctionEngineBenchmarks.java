@@ -0,0 +1,70 @@
+package course.concurrency.exams.auction;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scaling of {@link AuctionEngine} with the number of lots and bidding threads.
+ * Notifications are disabled so that only the engine itself is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class AuctionEngineBenchmarks {
+
+    @Param({"10", "1000", "100000", "1000000"})
+    private int lots;
+
+    private Notifier notifier;
+    private AuctionEngine engine;
+
+    public static void main(String[] args) throws RunnerException {
+        for (int threads : new int[]{1, 8, 64}) {
+            Options opt = new OptionsBuilder()
+                    .include(AuctionEngineBenchmarks.class.getSimpleName())
+                    .threads(threads)
+                    .warmupIterations(3)
+                    .measurementIterations(5)
+                    .forks(1)
+                    .build();
+
+            new Runner(opt).run();
+        }
+    }
+
+    @Setup
+    public void setup() {
+        notifier = new Notifier() {
+            @Override
+            public void sendOutdatedMessage(Bid bid) {}
+        };
+        engine = new AuctionEngine(notifier);
+
+        for (long lot = 0; lot < lots; lot++) {
+            engine.openLot(lot);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        notifier.shutdown();
+    }
+
+    @Benchmark
+    public boolean propose() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long price = random.nextLong(1_000_000_000L);
+        return engine.propose(random.nextInt(lots), price, price, price);
+    }
+
+    @Benchmark
+    public Bid getLatestBid() {
+        return engine.getLatestBid(ThreadLocalRandom.current().nextInt(lots));
+    }
+}
@@ -0,0 +1,173 @@
+package course.concurrency.exams.auction;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AuctionEngineTests {
+
+    private static final int lotCount = 1_000;
+    private static final int iterations = 100_000;
+    private static final int poolSize = Runtime.getRuntime().availableProcessors() * 2;
+
+    private Notifier notifier;
+    private AuctionEngine engine;
+
+    @BeforeEach
+    public void setup() {
+        notifier = new Notifier();
+        engine = new AuctionEngine(notifier);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        notifier.shutdown();
+    }
+
+    @Test
+    @DisplayName("Lots are independent")
+    public void shouldKeepLotsIndependent() {
+        assertTrue(engine.openLot(1L));
+        assertTrue(engine.openLot(2L));
+        assertFalse(engine.openLot(1L), "Lot should be opened only once");
+
+        assertTrue(engine.propose(1L, new Bid(1L, 1L, 10L)));
+        assertTrue(engine.propose(2L, 2L, 2L, 5L));
+        assertFalse(engine.propose(3L, 3L, 3L, 100L), "Bids on unknown lots should be rejected");
+
+        assertEquals(10L, engine.getLatestBid(1L).price());
+        assertEquals(5L, engine.getLatestBid(2L).price());
+        assertNull(engine.getLatestBid(3L));
+        assertEquals(2, engine.lotCount());
+    }
+
+    @Test
+    @DisplayName("stopAuction() stops a single lot")
+    public void shouldStopSingleLot() {
+        engine.openLot(1L);
+        engine.openLot(2L);
+        engine.propose(1L, 1L, 1L, 10L);
+        engine.propose(2L, 2L, 2L, 10L);
+
+        Bid stopped = engine.stopAuction(1L);
+
+        assertEquals(10L, stopped.price());
+        assertFalse(engine.propose(1L, 3L, 3L, 20L), "Bids should not be accepted after stop");
+        assertTrue(engine.propose(2L, 3L, 3L, 20L), "Other lots should stay open");
+        assertFalse(engine.openLot(1L), "Stopped lot should not be reopened");
+        assertNull(engine.stopAuction(3L));
+    }
+
+    @Test
+    @DisplayName("settle() removes the lot")
+    public void shouldSettleLot() {
+        engine.openLot(1L);
+        engine.propose(1L, 1L, 1L, 10L);
+
+        assertEquals(10L, engine.settle(1L).price());
+        assertEquals(0, engine.lotCount());
+        assertNull(engine.getLatestBid(1L));
+        assertNull(engine.settle(1L));
+        assertTrue(engine.openLot(1L), "Settled lot id can be used again");
+    }
+
+    @Test
+    @DisplayName("Lots survive table growth and settling")
+    public void shouldKeepLotsWhileTablesChange() {
+        for (long lot = 0; lot < 10_000; lot++) {
+            assertTrue(engine.openLot(lot));
+            engine.propose(lot, lot, lot, lot + 1);
+        }
+        for (long lot = 0; lot < 10_000; lot += 2) {
+            engine.settle(lot);
+        }
+        for (long lot = 10_000; lot < 20_000; lot++) {
+            assertTrue(engine.openLot(lot));
+        }
+
+        assertEquals(15_000, engine.lotCount());
+        for (long lot = 1; lot < 10_000; lot += 2) {
+            assertEquals(lot + 1, engine.getLatestBid(lot).price());
+            assertNull(engine.getLatestBid(lot - 1));
+        }
+    }
+
+    @Test
+    @DisplayName("Readers always find stable lots while others are opened and settled")
+    public void shouldFindLotsDuringChurn() throws InterruptedException {
+        for (long lot = 0; lot < lotCount; lot++) {
+            engine.openLot(lot);
+        }
+
+        CountDownLatch latch = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(poolSize);
+        AtomicInteger missing = new AtomicInteger();
+
+        for (int i = 0; i < poolSize; i++) {
+            int thread = i;
+            executor.submit(() -> {
+                try {
+                    latch.await();
+                } catch (InterruptedException ignored) {}
+
+                for (int it = 0; it < iterations; it++) {
+                    if (thread % 2 == 0) {
+                        long churned = lotCount + thread * (long) iterations + it;
+                        engine.openLot(churned);
+                        engine.settle(churned);
+                    } else if (engine.getLatestBid(it % lotCount) == null) {
+                        missing.incrementAndGet();
+                    }
+                }
+            });
+        }
+
+        latch.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+        assertEquals(0, missing.get());
+        assertEquals(lotCount, engine.lotCount());
+    }
+
+    @Test
+    @DisplayName("Concurrent bids on many lots")
+    public void shouldKeepHighestBidPerLot() throws InterruptedException {
+        for (long lot = 0; lot < lotCount; lot++) {
+            engine.openLot(lot);
+        }
+
+        CountDownLatch latch = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(poolSize);
+
+        for (int i = 0; i < poolSize; i++) {
+            executor.submit(() -> {
+                try {
+                    latch.await();
+                } catch (InterruptedException ignored) {}
+
+                for (int it = 0; it < iterations; it++) {
+                    engine.propose(it % lotCount, it, it, it);
+                }
+            });
+        }
+
+        latch.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+        for (long lot = 0; lot < lotCount; lot++) {
+            long expectedPrice = iterations - lotCount + lot;
+            assertEquals(expectedPrice, engine.getLatestBid(lot).price(), "Lost update found");
+        }
+    }
+}
@@ -32,14 +32,22 @@ public class AuctionStoppableRetryTests {
     public static class OptimisticSuite {
     }
 
+    @Suite
+    @IncludeTags("lockfree_stoppable")
+    @SelectPackages("course.concurrency.exams.auction")
+    public static class LockFreeSuite {
+    }
+
     private Notifier notifier;
 
     private AuctionStoppable pessimistic;
     private AuctionStoppable optimistic;
+    private AuctionStoppable lockFree;
 
     // for stopAuction test
     private Supplier<AuctionStoppable> pessimisticSupplier;
     private Supplier<AuctionStoppable> optimisticSupplier;
+    private Supplier<AuctionStoppable> lockFreeSupplier;
 
     @BeforeEach
     public void setup() {
@@ -50,6 +58,9 @@ public class AuctionStoppableRetryTests {
 
         optimisticSupplier = () -> new AuctionStoppableOptimistic(notifier);
         optimistic = optimisticSupplier.get();
+
+        lockFreeSupplier = () -> new AuctionStoppableLockFree(notifier);
+        lockFree = lockFreeSupplier.get();
     }
 
     @AfterEach
@@ -73,6 +84,14 @@ public class AuctionStoppableRetryTests {
         stopAuctionWithRetry(() -> optimistic);
     }
 
+    @Test
+    @DisplayName("Lock-free: stopAuction works with data races")
+    @Tag("lockfree_stoppable")
+    @Timeout(60)
+    public void stopWithRetryLockFree() throws InterruptedException {
+        stopAuctionWithRetry(() -> lockFree);
+    }
+
     public void stopAuctionWithRetry(Supplier<AuctionStoppable> auctionSuppler) throws InterruptedException {
         ExecutorService executor = Executors.newFixedThreadPool(8);
 
@@ -23,6 +23,11 @@ public class AuctionStoppableTests {
     @SelectPackages("course.concurrency.exams.auction")
     public static class OptimisticSuite {}
 
+    @Suite
+    @IncludeTags("lockfree_stoppable")
+    @SelectPackages("course.concurrency.exams.auction")
+    public static class LockFreeSuite {}
+
     private static final int TEST_COUNT = 10;
     private static final ExecutionStatistics stat = new ExecutionStatistics();
 
@@ -33,10 +38,12 @@ public class AuctionStoppableTests {
 
     private AuctionStoppable pessimistic;
     private AuctionStoppable optimistic;
+    private AuctionStoppable lockFree;
 
     // for stopAuction test
     private Supplier<AuctionStoppable> pessimisticSupplier;
     private Supplier<AuctionStoppable> optimisticSupplier;
+    private Supplier<AuctionStoppable> lockFreeSupplier;
 
     @BeforeEach
     public void setup() {
@@ -47,6 +54,9 @@ public class AuctionStoppableTests {
 
         optimisticSupplier = () -> new AuctionStoppableOptimistic(notifier);
         optimistic = optimisticSupplier.get();
+
+        lockFreeSupplier = () -> new AuctionStoppableLockFree(notifier);
+        lockFree = lockFreeSupplier.get();
     }
 
     @AfterEach
@@ -73,6 +83,13 @@ public class AuctionStoppableTests {
         loadTest(optimistic, "optimistic");
     }
 
+    @RepeatedTest(TEST_COUNT)
+    @DisplayName("Lock-free: load test")
+    @Tag("lockfree_stoppable")
+    public void testLockFree() throws InterruptedException {
+        loadTest(lockFree, "lockfree");
+    }
+
     public void loadTest(AuctionStoppable auction, String tag) throws InterruptedException {
         CountDownLatch latch = new CountDownLatch(1);
         ExecutorService executor = Executors.newFixedThreadPool(poolSize);
@@ -126,6 +143,13 @@ public class AuctionStoppableTests {
         testStoppedAuction(optimistic);
     }
 
+    @Test
+    @DisplayName("Lock-free: stopAuction() test")
+    @Tag("lockfree_stoppable")
+    public void shouldStopAuctionLockFree() {
+        testStoppedAuction(lockFree);
+    }
+
     public void testStoppedAuction(AuctionStoppable auction) {
         Bid expectedBid = new Bid(5L, 5L, 5L);
 
@@ -160,6 +184,14 @@ public class AuctionStoppableTests {
         stopAuctionWithDataRaces(() -> optimistic);
     }
 
+    @Test
+    @DisplayName("Lock-free: stopAuction works with data races")
+    @Tag("lockfree_stoppable")
+    @Timeout(60)
+    public void stopWithDataRacesLockFree() throws InterruptedException {
+        stopAuctionWithDataRaces(() -> lockFree);
+    }
+
     public void stopAuctionWithDataRaces(Supplier<AuctionStoppable> auctionSuppler) throws InterruptedException {
         ExecutorService executor = Executors.newFixedThreadPool(2);
 
@@ -9,6 +9,8 @@ import java.util.concurrent.*;
 import java.util.stream.LongStream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class AuctionTests {
 
@@ -22,6 +24,11 @@ public class AuctionTests {
     @SelectPackages("course.concurrency.exams.auction")
     public static class OptimisticSuite {}
 
+    @Suite
+    @IncludeTags("adaptive")
+    @SelectPackages("course.concurrency.exams.auction")
+    public static class AdaptiveSuite {}
+
     private static final int TEST_COUNT = 10;
     private static final ExecutionStatistics stat = new ExecutionStatistics();
 
@@ -31,12 +38,14 @@ public class AuctionTests {
     private Notifier notifier;
     private Auction pessimistic;
     private Auction optimistic;
+    private Auction adaptive;
 
     @BeforeEach
     public void setup() {
         notifier = new Notifier();
         pessimistic = new AuctionPessimistic(notifier);
         optimistic = new AuctionOptimistic(notifier);
+        adaptive = new AuctionAdaptive(notifier);
     }
 
     @AfterEach
@@ -63,6 +72,13 @@ public class AuctionTests {
         loadTest(pessimistic, "pessimistic");
     }
 
+    @RepeatedTest(TEST_COUNT)
+    @DisplayName("Adaptive: load test")
+    @Tag("adaptive")
+    public void testAdaptiveUnderLoad() throws InterruptedException {
+        loadTest(adaptive, "adaptive");
+    }
+
     @Test
     @DisplayName("Optimistic: lost update because of data races")
     @Tag("optimistic")
@@ -79,6 +95,46 @@ public class AuctionTests {
         shouldNotLoseUpdate(pessimistic);
     }
 
+    @Test
+    @DisplayName("Adaptive: lost update because of data races")
+    @Tag("adaptive")
+    @Timeout(60)
+    public void lostUpdateAdaptive() throws InterruptedException {
+        shouldNotLoseUpdate(adaptive);
+    }
+
+    @Test
+    @DisplayName("Optimistic: primitive proposal")
+    @Tag("optimistic")
+    public void primitiveProposalOptimistic() {
+        primitiveProposal(optimistic);
+    }
+
+    @Test
+    @DisplayName("Pessimistic: primitive proposal")
+    @Tag("pessimistic")
+    public void primitiveProposalPessimistic() {
+        primitiveProposal(pessimistic);
+    }
+
+    @Test
+    @DisplayName("Adaptive: primitive proposal")
+    @Tag("adaptive")
+    public void primitiveProposalAdaptive() {
+        primitiveProposal(adaptive);
+    }
+
+    public void primitiveProposal(Auction auction) {
+        assertTrue(auction.propose(5L, 5L, 5L), "Higher bid should be accepted");
+        assertFalse(auction.propose(6L, 6L, 5L), "Equal bid should be rejected");
+        assertFalse(auction.propose(new Bid(7L, 7L, 4L)), "Lower bid should be rejected");
+
+        Bid latestBid = auction.getLatestBid();
+        assertEquals(5L, latestBid.id());
+        assertEquals(5L, latestBid.participantId());
+        assertEquals(5L, latestBid.price());
+    }
+
     public void loadTest(Auction auction, String tag) throws InterruptedException {
         ExecutorService executor = Executors.newFixedThreadPool(poolSize);
         CountDownLatch latch = new CountDownLatch(1);
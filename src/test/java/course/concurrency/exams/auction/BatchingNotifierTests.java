@@ -0,0 +1,245 @@
+package course.concurrency.exams.auction;
+
+import course.concurrency.exams.auction.BatchingNotifier.OverflowPolicy;
+import course.concurrency.exams.auction.BatchingNotifier.Outbid;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BatchingNotifierTests {
+
+    private static final long NO_TIMER = 60_000L;
+
+    private BatchingNotifier notifier;
+
+    @AfterEach
+    public void tearDown() {
+        notifier.shutdown();
+    }
+
+    @Test
+    @DisplayName("Messages of the same participant are coalesced")
+    public void shouldCoalesceByParticipant() {
+        notifier = new BatchingNotifier(10, NO_TIMER, 10, 1, OverflowPolicy.DROP);
+
+        for (long i = 0; i < 1000; i++) {
+            notifier.sendOutdatedMessage(new Bid(i, i % 3, i));
+        }
+
+        assertEquals(3, notifier.getPendingCount());
+        assertEquals(997, notifier.getCoalescedCount());
+        assertEquals(0, notifier.getBatchCount());
+    }
+
+    @Test
+    @DisplayName("Messages of the same participant in different lots are kept apart")
+    public void shouldCoalesceByParticipantAndLot() {
+        notifier = new BatchingNotifier(10, NO_TIMER, 10, 1, OverflowPolicy.DROP);
+
+        notifier.sendOutdatedMessage(1L, new Bid(1L, 7L, 10L));
+        notifier.sendOutdatedMessage(2L, new Bid(2L, 7L, 20L));
+        notifier.sendOutdatedMessage(1L, new Bid(3L, 7L, 30L));
+
+        assertEquals(2, notifier.getPendingCount());
+        assertEquals(1, notifier.getCoalescedCount());
+    }
+
+    @Test
+    @DisplayName("Batches carry the latest message of every participant and lot")
+    public void shouldSendCoalescedMessages() throws InterruptedException {
+        Map<String, Long> delivered = new ConcurrentHashMap<>();
+        notifier = new BatchingNotifier(4, NO_TIMER, 4, 1, OverflowPolicy.DROP) {
+            @Override
+            protected void sendBatch(List<Outbid> batch) {
+                batch.forEach(m -> delivered.put(m.lotId() + "/" + m.bid().participantId(), m.bid().price()));
+            }
+        };
+
+        for (long price = 1; price <= 5; price++) {
+            notifier.sendOutdatedMessage(1L, new Bid(price, 1L, price));
+            notifier.sendOutdatedMessage(2L, new Bid(price, 1L, price * 10));
+        }
+        notifier.sendOutdatedMessage(1L, new Bid(6L, 2L, 6L));
+        notifier.sendOutdatedMessage(2L, new Bid(7L, 2L, 7L));
+
+        awaitBatches(1);
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (delivered.size() < 4 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(Map.of("1/1", 5L, "2/1", 50L, "1/2", 6L, "2/2", 7L), delivered);
+    }
+
+    @Test
+    @DisplayName("Pending count matches messages under concurrent coalescing and flushing")
+    public void shouldCountPendingUnderContention() throws InterruptedException {
+        int capacity = 50;
+        int poolSize = Runtime.getRuntime().availableProcessors() * 2;
+        int iterations = 100_000;
+        notifier = new BatchingNotifier(capacity, 1L, capacity, 1000, OverflowPolicy.DROP) {
+            @Override
+            protected void sendBatch(List<Outbid> batch) {}
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(poolSize);
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicInteger overCapacity = new AtomicInteger();
+
+        for (int i = 0; i < poolSize; i++) {
+            executor.submit(() -> {
+                try {
+                    latch.await();
+                } catch (InterruptedException ignored) {}
+                for (long it = 0; it < iterations; it++) {
+                    notifier.sendOutdatedMessage(it % 3, new Bid(it, it % 40, it));
+                    int count = notifier.getPendingCount();
+                    if (count < 0 || count > capacity + poolSize) {
+                        overCapacity.incrementAndGet();
+                    }
+                }
+            });
+        }
+        latch.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+        assertEquals(0, overCapacity.get());
+        awaitAccounted((long) iterations * poolSize);
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (notifier.getPendingCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, notifier.getPendingCount());
+    }
+
+    @Test
+    @DisplayName("Default bid is not sent")
+    public void shouldSkipDefaultBid() {
+        notifier = new BatchingNotifier(10, NO_TIMER, 10, 1, OverflowPolicy.DROP);
+
+        notifier.sendOutdatedMessage(new Bid(Bid.DEFAULT_VALUE, Bid.DEFAULT_VALUE, Bid.DEFAULT_VALUE));
+
+        assertEquals(0, notifier.getPendingCount());
+    }
+
+    @Test
+    @DisplayName("Full batch is flushed")
+    public void shouldFlushBySize() throws InterruptedException {
+        notifier = new BatchingNotifier(5, NO_TIMER, 100, 10, OverflowPolicy.DROP);
+
+        for (long i = 0; i < 5; i++) {
+            notifier.sendOutdatedMessage(new Bid(i, i, i));
+        }
+
+        awaitBatches(1);
+        assertEquals(0, notifier.getPendingCount());
+    }
+
+    @Test
+    @DisplayName("Pending messages are flushed by timer")
+    public void shouldFlushByTime() throws InterruptedException {
+        notifier = new BatchingNotifier(100, 50L, 100, 10, OverflowPolicy.DROP);
+
+        notifier.sendOutdatedMessage(new Bid(1L, 1L, 1L));
+
+        awaitBatches(1);
+        assertEquals(0, notifier.getPendingCount());
+    }
+
+    @Test
+    @DisplayName("Overflow with DROP policy")
+    public void shouldDropOnOverflow() throws InterruptedException {
+        notifier = new BatchingNotifier(10, NO_TIMER, 10, 1, OverflowPolicy.DROP);
+        int messages = 1000;
+
+        for (long i = 0; i < messages; i++) {
+            notifier.sendOutdatedMessage(new Bid(i, i, i));
+        }
+
+        awaitAccounted(messages);
+        assertTrue(notifier.getDroppedCount() > 0, "Senders are busy, messages should be dropped");
+        assertTrue(notifier.getPendingCount() <= 10);
+    }
+
+    @Test
+    @DisplayName("Overflow with FLUSH policy drops only the message that doesn't fit")
+    public void shouldRequestFlushOnOverflow() throws InterruptedException {
+        notifier = new BatchingNotifier(10, NO_TIMER, 10, 1, OverflowPolicy.FLUSH);
+        int messages = 1000;
+
+        long start = System.nanoTime();
+        for (long i = 0; i < messages; i++) {
+            notifier.sendOutdatedMessage(new Bid(i, i, i));
+        }
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        awaitAccounted(messages);
+        assertTrue(notifier.getBatchCount() > 0, "Flusher should send batches");
+        assertTrue(notifier.getDroppedCount() > 0, "Senders are busy, messages should be dropped");
+        assertTrue(elapsedMillis < 1000, "Bidding thread should not flush: " + elapsedMillis + "ms");
+    }
+
+    @Test
+    @DisplayName("Shutdown sends pending messages, later ones are dropped")
+    public void shouldFlushOnShutdown() {
+        notifier = new BatchingNotifier(10, NO_TIMER, 10, 1, OverflowPolicy.DROP);
+
+        for (long i = 0; i < 3; i++) {
+            notifier.sendOutdatedMessage(new Bid(i, i, i));
+        }
+        notifier.shutdown();
+        notifier.sendOutdatedMessage(new Bid(3L, 3L, 3L));
+
+        assertEquals(1, notifier.getBatchCount());
+        assertEquals(3, notifier.getSentCount());
+        assertEquals(1, notifier.getDroppedCount());
+        assertEquals(0, notifier.getPendingCount());
+    }
+
+    @Test
+    @DisplayName("Bounded memory under bidding war")
+    public void shouldStayBounded() throws InterruptedException {
+        int capacity = 100;
+        notifier = new BatchingNotifier(capacity, NO_TIMER, capacity, 2, OverflowPolicy.FLUSH);
+
+        for (long i = 0; i < 1_000_000; i++) {
+            notifier.sendOutdatedMessage(new Bid(i, i % 1000, i));
+            assertTrue(notifier.getPendingCount() <= capacity);
+        }
+
+        awaitAccounted(1_000_000);
+        assertTrue(notifier.getBatchCount() < 1000, "Batches should be much fewer than messages");
+    }
+
+    private void awaitAccounted(long expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (accounted() < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(expected, accounted(), "Every message should be sent, coalesced, dropped or pending");
+    }
+
+    private long accounted() {
+        return notifier.getSentCount() + notifier.getCoalescedCount() + notifier.getDroppedCount()
+                + notifier.getPendingCount();
+    }
+
+    private void awaitBatches(long expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (notifier.getBatchCount() < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(expected, notifier.getBatchCount());
+    }
+}
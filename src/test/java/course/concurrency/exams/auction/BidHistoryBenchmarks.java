@@ -0,0 +1,106 @@
+package course.concurrency.exams.auction;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Propose throughput with and without {@link BidHistory}, the target is less than 10% drop.
+ * Writers propose rising prices, one reader per group reads the latest bid, the same work
+ * in both groups, so {@code plain} and {@code history} differ only in recording.
+ * {@code queries} adds a reader of the top bids to see how queries slow writers down.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class BidHistoryBenchmarks {
+
+    private static final int WRITERS = 3;
+    private static final int TOP = 10;
+    private static final int HISTORY = 16;
+    private static final int JITTER = 1_000;
+
+    private Notifier notifier;
+    private Auction plain;
+    private AuctionWithHistory withHistory;
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(BidHistoryBenchmarks.class.getSimpleName())
+                .warmupIterations(3)
+                .measurementIterations(5)
+                .forks(1)
+                .build();
+
+        new Runner(opt).run();
+    }
+
+    @Setup
+    public void setup() {
+        notifier = new Notifier() {
+            @Override
+            public void sendOutdatedMessage(Bid bid) {}
+        };
+        plain = new AuctionOptimistic(notifier);
+        withHistory = new AuctionWithHistory(new AuctionOptimistic(notifier), HISTORY);
+    }
+
+    @TearDown
+    public void tearDown() {
+        notifier.shutdown();
+    }
+
+    @Benchmark
+    @Group("plain")
+    @GroupThreads(WRITERS)
+    public boolean proposePlain() {
+        long price = nextPrice();
+        return plain.propose(price, price, price);
+    }
+
+    @Benchmark
+    @Group("plain")
+    @GroupThreads(1)
+    public Bid readPlain() {
+        return plain.getLatestBid();
+    }
+
+    @Benchmark
+    @Group("history")
+    @GroupThreads(WRITERS)
+    public boolean proposeWithHistory() {
+        long price = nextPrice();
+        return withHistory.propose(price, price, price);
+    }
+
+    @Benchmark
+    @Group("history")
+    @GroupThreads(1)
+    public Bid readWithHistory() {
+        return withHistory.getLatestBid();
+    }
+
+    @Benchmark
+    @Group("queries")
+    @GroupThreads(WRITERS)
+    public boolean proposeWhileQueried() {
+        long price = nextPrice();
+        return withHistory.propose(price, price, price);
+    }
+
+    @Benchmark
+    @Group("queries")
+    @GroupThreads(1)
+    public Object readTopBids() {
+        return withHistory.getTopBids(TOP);
+    }
+
+    private static long nextPrice() {
+        return System.nanoTime() + ThreadLocalRandom.current().nextInt(-JITTER, JITTER);
+    }
+}
@@ -0,0 +1,197 @@
+package course.concurrency.exams.auction;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BidHistoryTests {
+
+    private static final int iterations = 100_000;
+    private static final int poolSize = Runtime.getRuntime().availableProcessors() * 2;
+
+    private Notifier notifier;
+
+    @BeforeEach
+    public void setup() {
+        notifier = new Notifier();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        notifier.shutdown();
+    }
+
+    @Test
+    @DisplayName("Top bids are the highest accepted ones")
+    public void shouldReturnTopBids() {
+        AuctionWithHistory auction = new AuctionWithHistory(new AuctionOptimistic(notifier), 4);
+
+        auction.propose(new Bid(1L, 10L, 100L));
+        auction.propose(2L, 20L, 50L);
+        auction.propose(3L, 30L, 200L);
+        auction.propose(4L, 40L, 300L);
+
+        List<Bid> top = auction.getTopBids(2);
+
+        assertEquals(2, top.size());
+        assertEquals(300L, top.get(0).price());
+        assertEquals(40L, top.get(0).participantId());
+        assertEquals(200L, top.get(1).price());
+        assertEquals(3, auction.getTopBids(10).size(), "Rejected bid should not be recorded");
+    }
+
+    @Test
+    @DisplayName("History keeps only the latest bids")
+    public void shouldOverwriteOldestBids() {
+        BidHistory history = new BidHistory(8);
+
+        for (long i = 0; i < 100; i++) {
+            history.record(i, i, i);
+        }
+
+        List<Bid> top = history.getTopBids(8);
+
+        assertEquals(8, top.size());
+        assertEquals(99L, top.get(0).price());
+        assertEquals(92L, top.get(7).price());
+        assertEquals(100, history.getRecordedCount());
+    }
+
+    @Test
+    @DisplayName("Late record of a lower bid does not evict a higher one")
+    public void shouldKeepTopBidsRecordedOutOfOrder() {
+        BidHistory history = new BidHistory(2);
+
+        history.record(2L, 2L, 20L);
+        history.record(3L, 3L, 30L);
+        history.record(1L, 1L, 10L);
+
+        List<Bid> top = history.getTopBids(2);
+
+        assertEquals(30L, top.get(0).price());
+        assertEquals(20L, top.get(1).price());
+        assertEquals(3, history.getRecordedCount());
+    }
+
+    @Test
+    @DisplayName("Reader skips a slot whose writer was preempted")
+    public void shouldNotWaitForWriter() throws ReflectiveOperationException {
+        BidHistory history = new BidHistory(2);
+        history.record(1L, 1L, 10L);
+        history.record(2L, 2L, 20L);
+
+        // a writer that claimed the slot and stopped before releasing it
+        Field field = BidHistory.class.getDeclaredField("sequences");
+        field.setAccessible(true);
+        AtomicLongArray sequences = (AtomicLongArray) field.get(history);
+        sequences.incrementAndGet(0);
+
+        List<Bid> top = assertTimeoutPreemptively(Duration.ofSeconds(1), () -> history.getTopBids(2));
+        assertEquals(1, top.size());
+    }
+
+    @Test
+    @DisplayName("Concurrent records in any order keep the exact top")
+    public void shouldKeepExactTopUnderConcurrentRecords() throws InterruptedException {
+        int capacity = 32;
+        int perThread = 20_000;
+        BidHistory history = new BidHistory(capacity);
+        CountDownLatch latch = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(poolSize);
+
+        for (int i = 0; i < poolSize; i++) {
+            int thread = i;
+            executor.submit(() -> {
+                try {
+                    latch.await();
+                } catch (InterruptedException ignored) {}
+
+                // every thread records its share of prices from the highest down
+                for (long it = perThread - 1; it >= 0; it--) {
+                    long price = it * poolSize + thread;
+                    history.record(price, thread, price);
+                }
+            });
+        }
+
+        latch.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+        List<Bid> top = history.getTopBids(capacity);
+        long highest = (long) perThread * poolSize - 1;
+        assertEquals(capacity, top.size());
+        for (int i = 0; i < capacity; i++) {
+            assertEquals(highest - i, top.get(i).price());
+        }
+    }
+
+    @Test
+    @DisplayName("Concurrent proposals and queries")
+    public void shouldKeepTopBidsUnderLoad() throws InterruptedException {
+        int k = 16;
+        AuctionStoppableWithHistory auction =
+                new AuctionStoppableWithHistory(new AuctionStoppableLockFree(notifier), 256);
+        AtomicLong prices = new AtomicLong();
+        AtomicBoolean isOrdered = new AtomicBoolean(true);
+
+        CountDownLatch latch = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(poolSize + 1);
+
+        for (int i = 0; i < poolSize; i++) {
+            executor.submit(() -> {
+                try {
+                    latch.await();
+                } catch (InterruptedException ignored) {}
+
+                for (int it = 0; it < iterations; it++) {
+                    long price = prices.incrementAndGet();
+                    auction.propose(price, price, price);
+                }
+            });
+        }
+        executor.submit(() -> {
+            try {
+                latch.await();
+            } catch (InterruptedException ignored) {}
+
+            for (int it = 0; it < 1_000; it++) {
+                List<Bid> top = auction.getTopBids(k);
+                for (int i = 1; i < top.size(); i++) {
+                    if (top.get(i - 1).price() <= top.get(i).price()) {
+                        isOrdered.set(false);
+                    }
+                }
+            }
+        });
+
+        latch.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+        assertTrue(isOrdered.get(), "Top bids should be ordered by price");
+
+        Bid stopped = auction.stopAuction();
+        List<Bid> top = auction.getTopBids(k);
+
+        assertEquals(k, top.size());
+        assertEquals(stopped.price(), top.get(0).price());
+        for (int i = 1; i < k; i++) {
+            assertTrue(top.get(i - 1).price() > top.get(i).price());
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package course.concurrency.exams.auction;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to drain a backlog of outbid messages: fixed pool of {@code availableProcessors()}
+ * threads against a send per virtual thread limited by a semaphore.
+ * Sends are shortened to {@link #SEND_MILLIS} to keep iterations reasonable.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class NotifierBenchmarks {
+
+    private static final long SEND_MILLIS = 20;
+    private static final int MAX_IN_FLIGHT = 1_000;
+
+    @Param({"fixed", "virtual"})
+    private String type;
+
+    @Param({"1000", "10000"})
+    private int backlog;
+
+    private Notifier notifier;
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(NotifierBenchmarks.class.getSimpleName())
+                .warmupIterations(1)
+                .measurementIterations(5)
+                .forks(1)
+                .build();
+
+        new Runner(opt).run();
+    }
+
+    @Setup(Level.Invocation)
+    public void setup() {
+        if ("fixed".equals(type)) {
+            notifier = new Notifier() {
+                @Override
+                protected void imitateSending() {
+                    sleep();
+                }
+            };
+        } else {
+            notifier = new VirtualThreadNotifier(MAX_IN_FLIGHT) {
+                @Override
+                protected void imitateSending() {
+                    sleep();
+                }
+            };
+        }
+    }
+
+    @Benchmark
+    public boolean drain() throws InterruptedException {
+        for (long i = 0; i < backlog; i++) {
+            notifier.sendOutdatedMessage(new Bid(i, i, i));
+        }
+
+        notifier.shutdown();
+        return notifier.awaitTermination(10, TimeUnit.MINUTES);
+    }
+
+    private static void sleep() {
+        try {
+            Thread.sleep(SEND_MILLIS);
+        } catch (InterruptedException ignored) {}
+    }
+}
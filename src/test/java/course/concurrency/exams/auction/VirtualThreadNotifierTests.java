@@ -0,0 +1,49 @@
+package course.concurrency.exams.auction;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class VirtualThreadNotifierTests {
+
+    @Test
+    @DisplayName("Concurrent sends never exceed the limit")
+    public void shouldLimitInFlightSends() throws InterruptedException {
+        int maxInFlight = 4;
+        AtomicInteger sent = new AtomicInteger();
+        // counted here, not by the semaphore that enforces the limit
+        AtomicInteger sending = new AtomicInteger();
+        AtomicInteger maxObserved = new AtomicInteger();
+
+        VirtualThreadNotifier notifier = new VirtualThreadNotifier(maxInFlight) {
+            @Override
+            protected void imitateSending() {
+                maxObserved.accumulateAndGet(sending.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(5);
+                } catch (InterruptedException ignored) {
+                } finally {
+                    sending.decrementAndGet();
+                }
+                sent.incrementAndGet();
+            }
+        };
+
+        for (long i = 0; i < 100; i++) {
+            notifier.sendOutdatedMessage(new Bid(i, i, i));
+        }
+        notifier.sendOutdatedMessage(new Bid(Bid.DEFAULT_VALUE, Bid.DEFAULT_VALUE, Bid.DEFAULT_VALUE));
+
+        notifier.shutdown();
+        assertTrue(notifier.awaitTermination(30, TimeUnit.SECONDS));
+
+        assertEquals(100, sent.get());
+        assertTrue(maxObserved.get() <= maxInFlight, "Too many sends in flight: " + maxObserved.get());
+        assertTrue(maxObserved.get() > 1, "Sends should run concurrently");
+    }
+}
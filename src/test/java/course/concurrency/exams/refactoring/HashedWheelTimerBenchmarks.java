@@ -0,0 +1,78 @@
+package course.concurrency.exams.refactoring;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link #TIMEOUTS} client expirations spread over {@link #SPREAD_MILLIS}, scheduled at once and
+ * awaited. Process CPU time per run is printed next to the wall time that JMH reports.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class HashedWheelTimerBenchmarks {
+
+    private static final int TIMEOUTS = 100_000;
+    private static final long SPREAD_MILLIS = 1000;
+
+    @Param({"wheel", "scheduledPool"})
+    private String timerType;
+
+    private HashedWheelTimer wheel;
+    private ScheduledThreadPoolExecutor scheduledPool;
+    private long[] delays;
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(HashedWheelTimerBenchmarks.class.getSimpleName())
+                .warmupIterations(2)
+                .measurementIterations(5)
+                .forks(1)
+                .build();
+
+        new Runner(opt).run();
+    }
+
+    @Setup
+    public void setup() {
+        wheel = new HashedWheelTimer("bench-timer", 10, TimeUnit.MILLISECONDS, 512);
+        scheduledPool = new ScheduledThreadPoolExecutor(1);
+        delays = ThreadLocalRandom.current().longs(TIMEOUTS, 0, SPREAD_MILLIS).toArray();
+    }
+
+    @TearDown
+    public void tearDown() {
+        wheel.stop();
+        scheduledPool.shutdownNow();
+    }
+
+    @Benchmark
+    public void expireAll() throws InterruptedException {
+        com.sun.management.OperatingSystemMXBean os =
+                (com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+        long cpuBefore = os.getProcessCpuTime();
+        CountDownLatch expired = new CountDownLatch(TIMEOUTS);
+        Runnable expire = expired::countDown;
+
+        for (long delay : delays) {
+            if ("wheel".equals(timerType)) {
+                wheel.schedule(expire, delay, TimeUnit.MILLISECONDS);
+            } else {
+                scheduledPool.schedule(expire, delay, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        expired.await();
+        System.out.printf("%n%s: cpu %dms%n", timerType,
+                TimeUnit.NANOSECONDS.toMillis(os.getProcessCpuTime() - cpuBefore));
+    }
+}
@@ -0,0 +1,116 @@
+package course.concurrency.exams.refactoring;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HashedWheelTimerTests {
+
+    private final HashedWheelTimer timer = new HashedWheelTimer("test-timer", 5, TimeUnit.MILLISECONDS, 8);
+
+    @AfterEach
+    void tearDown() {
+        timer.stop();
+    }
+
+    @Test
+    @DisplayName("Timeouts run at their deadlines, also after several laps")
+    void runAtDeadline() throws InterruptedException {
+        List<Integer> order = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(3);
+        long start = System.nanoTime();
+        long[] ranAfterMillis = new long[3];
+        int[] delays = {150, 10, 60};
+
+        for (int i = 0; i < delays.length; i++) {
+            int index = i;
+            timer.schedule(() -> {
+                ranAfterMillis[index] = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                order.add(delays[index]);
+                done.countDown();
+            }, delays[i], TimeUnit.MILLISECONDS);
+        }
+
+        assertTrue(done.await(1, TimeUnit.SECONDS));
+        assertEquals(List.of(10, 60, 150), order);
+        for (int i = 0; i < delays.length; i++) {
+            assertTrue(ranAfterMillis[i] >= delays[i], "Ran before deadline");
+            assertTrue(ranAfterMillis[i] < delays[i] + 100, "Ran too late");
+        }
+    }
+
+    @Test
+    @DisplayName("Cancelled timeout doesn't run")
+    void cancel() throws InterruptedException {
+        AtomicInteger runs = new AtomicInteger();
+        HashedWheelTimer.Timeout timeout = timer.schedule(runs::incrementAndGet, 30, TimeUnit.MILLISECONDS);
+        HashedWheelTimer.Timeout later = timer.schedule(runs::incrementAndGet, 30, TimeUnit.MILLISECONDS);
+
+        Thread.sleep(10);
+        assertTrue(timeout.cancel());
+        Thread.sleep(60);
+
+        assertEquals(1, runs.get());
+        assertTrue(timeout.isCancelled());
+        assertTrue(later.isExpired());
+        assertFalse(later.cancel(), "Expired timeout can't be cancelled");
+    }
+
+    @Test
+    @DisplayName("Periodic task repeats until cancelled")
+    void fixedDelay() throws InterruptedException {
+        AtomicInteger runs = new AtomicInteger();
+        HashedWheelTimer.Timeout timeout = timer.scheduleWithFixedDelay(runs::incrementAndGet, 10, TimeUnit.MILLISECONDS);
+
+        Thread.sleep(200);
+        timeout.cancel();
+        int stoppedAt = runs.get();
+        Thread.sleep(50);
+
+        assertTrue(stoppedAt >= 5, "Ran only " + stoppedAt + " times");
+        assertTrue(runs.get() <= stoppedAt + 1);
+    }
+
+    @Test
+    @DisplayName("Thread starts with the first timeout and ends on stop")
+    void startOnFirstTimeout() throws InterruptedException {
+        HashedWheelTimer lazy = new HashedWheelTimer("lazy-timer", 5, TimeUnit.MILLISECONDS, 8);
+        assertFalse(isRunning("lazy-timer"), "Unused timer should not hold a thread");
+
+        CountDownLatch done = new CountDownLatch(1);
+        lazy.schedule(done::countDown, 10, TimeUnit.MILLISECONDS);
+        assertTrue(done.await(1, TimeUnit.SECONDS));
+        assertTrue(isRunning("lazy-timer"));
+
+        lazy.stop();
+        assertFalse(isRunning("lazy-timer"));
+        assertThrows(IllegalStateException.class, lazy::start);
+    }
+
+    @Test
+    @DisplayName("Stopped timer rejects new timeouts and reports pending ones")
+    void stop() {
+        timer.schedule(() -> {}, 1, TimeUnit.MINUTES);
+        timer.schedule(() -> {}, 1, TimeUnit.HOURS);
+
+        assertEquals(2, timer.stop());
+        assertTrue(timer.isStopped());
+        assertThrows(RejectedExecutionException.class, () -> timer.schedule(() -> {}, 1, TimeUnit.SECONDS));
+    }
+
+    private static boolean isRunning(String threadName) {
+        return Thread.getAllStackTraces().keySet().stream().anyMatch(t -> t.getName().equals(threadName));
+    }
+}
@@ -0,0 +1,140 @@
+package course.concurrency.exams.refactoring;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class LoadingCacheTests {
+
+    @Test
+    @DisplayName("Value is loaded once and then served from cache")
+    void loadOnMiss() throws InterruptedException {
+        AtomicInteger loads = new AtomicInteger();
+        Others.LoadingCache<String, Integer> cache = new Others.LoadingCache<>(key -> {
+            loads.incrementAndGet();
+            return key.length();
+        }, 0, 0, 0);
+        int poolSize = 8;
+        CountDownLatch latch = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(poolSize);
+
+        for (int i = 0; i < poolSize; i++) {
+            executor.submit(() -> {
+                try {
+                    latch.await();
+                } catch (InterruptedException ignored) {}
+                for (int it = 0; it < 1000; it++) {
+                    cache.get("router");
+                }
+            });
+        }
+        latch.countDown();
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+
+        assertEquals(1, loads.get());
+        assertEquals(poolSize * 1000, cache.getHitCount() + cache.getMissCount());
+        assertEquals(6, cache.get("router"));
+    }
+
+    @Test
+    @DisplayName("Entry expires after write")
+    void expireAfterWrite() throws InterruptedException {
+        AtomicInteger loads = new AtomicInteger();
+        Others.LoadingCache<String, Integer> cache = new Others.LoadingCache<>(key -> loads.incrementAndGet(),
+                0, 50, 0);
+
+        assertEquals(1, cache.get("router"));
+        Thread.sleep(20);
+        assertEquals(1, cache.get("router"));
+        Thread.sleep(50);
+        assertEquals(2, cache.get("router"));
+        assertEquals(1, cache.getEvictionCount());
+    }
+
+    @Test
+    @DisplayName("Accessed entry stays, idle entry is removed by cleanUp")
+    void expireAfterAccess() throws InterruptedException {
+        Others.LoadingCache<String, String> cache = new Others.LoadingCache<>(null, 80, 0, 0);
+        cache.add("busy", "client");
+        cache.add("idle", "client");
+
+        for (int i = 0; i < 10; i++) {
+            Thread.sleep(20);
+            assertEquals("client", cache.get("busy"));
+            cache.cleanUp();
+        }
+
+        assertEquals(1, cache.size());
+        assertNull(cache.get("idle"));
+        assertEquals(1, cache.getEvictionCount());
+    }
+
+    @Test
+    @DisplayName("Timer expires idle entry on the executor without cleanUp")
+    void expireOnTimer() throws InterruptedException {
+        HashedWheelTimer timer = new HashedWheelTimer("cache-timer", 5, TimeUnit.MILLISECONDS, 8);
+        ExecutorService executor = Executors.newSingleThreadExecutor(r -> new Thread(r, "cache-expiry"));
+        Set<String> expiryThreads = ConcurrentHashMap.newKeySet();
+        Others.LoadingCache<String, String> cache = new Others.LoadingCache<>(null, 80, 0, 0, timer, task -> {
+            expiryThreads.add(Thread.currentThread().getName());
+            executor.execute(task);
+        });
+        cache.add("busy", "client");
+        cache.add("idle", "client");
+
+        for (int i = 0; i < 10; i++) {
+            Thread.sleep(20);
+            assertEquals("client", cache.get("busy"));
+        }
+
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals(Set.of("cache-timer"), expiryThreads, "Timer thread should only hand expiry over");
+        timer.stop();
+        executor.shutdown();
+    }
+
+    @Test
+    @DisplayName("Oldest entries are evicted over size bound")
+    void sizeBound() {
+        Others.LoadingCache<Integer, Integer> cache = new Others.LoadingCache<>(key -> key, 0, 0, 100);
+
+        for (int i = 0; i < 1000; i++) {
+            cache.get(i);
+        }
+
+        assertEquals(100, cache.size());
+        assertEquals(900, cache.getEvictionCount());
+        cache.get(999);
+        assertEquals(1, cache.getHitCount(), "Recent entry should be cached");
+        assertEquals(1000, cache.getMissCount());
+    }
+
+    @Test
+    @DisplayName("Invalidation keeps other entries")
+    void invalidate() {
+        Others.LoadingCache<String, String> cache = new Others.LoadingCache<>();
+        cache.add("a", "client");
+        cache.add("b", "client");
+
+        cache.invalidate("a");
+        cache.cleanUp();
+
+        assertNull(cache.get("a"));
+        assertEquals("client", cache.get("b"));
+
+        cache.invalidateAll();
+        assertEquals(0, cache.size());
+    }
+}
@@ -0,0 +1,119 @@
+package course.concurrency.exams.refactoring;
+
+import course.concurrency.exams.refactoring.Others.MountTableManager;
+import course.concurrency.exams.refactoring.Others.RouterState;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.lang.reflect.Field;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Full-fleet refresh of {@link #ROUTERS} routers, every router answers in {@link #ROUTER_MILLIS}.
+ * Time from the start of a refresh to each router's answer is collected, p50/p99/max
+ * of the last refresh are printed after every trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class MountTableRefresherBenchmarks {
+
+    private static final int ROUTERS = 10_000;
+    private static final long ROUTER_MILLIS = 1;
+
+    @Param({"16", "64", "256"})
+    private int parallelism;
+
+    @Param({"false", "true"})
+    private boolean virtual;
+
+    private MountTableRefresherService service;
+    private AtomicLongArray latencies;
+    private AtomicInteger answered;
+    private volatile long refreshStart;
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(MountTableRefresherBenchmarks.class.getSimpleName())
+                .warmupIterations(2)
+                .measurementIterations(5)
+                .forks(1)
+                .build();
+
+        new Runner(opt).run();
+    }
+
+    @Setup
+    public void setup() throws ReflectiveOperationException {
+        service = new MountTableRefresherService(parallelism, virtual) {
+            @Override
+            public void log(String message) {
+            }
+        };
+        latencies = new AtomicLongArray(ROUTERS);
+        answered = new AtomicInteger();
+
+        MountTableManager manager = new MountTableManager("router") {
+            @Override
+            public boolean refresh() {
+                try {
+                    Thread.sleep(ROUTER_MILLIS);
+                } catch (InterruptedException e) {
+                    return false;
+                }
+                int i = answered.getAndIncrement();
+                if (i < ROUTERS) {
+                    latencies.set(i, System.nanoTime() - refreshStart);
+                }
+                return true;
+            }
+        };
+        Field createManager = MountTableRefresherService.class.getDeclaredField("createManager");
+        createManager.setAccessible(true);
+        createManager.set(service, (Function<String, MountTableManager>) adminAddress -> manager);
+
+        newRouters();
+        service.serviceInit();
+        service.setCacheUpdateTimeout(TimeUnit.MINUTES.toMillis(1));
+    }
+
+    // routers that are up to date are skipped, so every refresh gets routers that never were refreshed
+    @Setup(Level.Invocation)
+    public void newRouters() {
+        Others.RouterStore store = new Others.RouterStore();
+        List<RouterState> states = IntStream.range(0, ROUTERS)
+                .mapToObj(i -> new RouterState("router"))
+                .collect(Collectors.toList());
+        store.addAll(states);
+        service.setRouterStore(store);
+    }
+
+    @TearDown
+    public void tearDown() {
+        long[] sorted = IntStream.range(0, Math.min(answered.get(), ROUTERS))
+                .mapToLong(latencies::get).sorted().toArray();
+        if (sorted.length > 0) {
+            System.out.printf("%nrouter latency p50 %dms, p99 %dms, max %dms%n",
+                    TimeUnit.NANOSECONDS.toMillis(sorted[sorted.length / 2]),
+                    TimeUnit.NANOSECONDS.toMillis(sorted[(int) (sorted.length * 0.99)]),
+                    TimeUnit.NANOSECONDS.toMillis(sorted[sorted.length - 1]));
+        }
+        service.serviceStop();
+    }
+
+    @Benchmark
+    public void refreshAll() {
+        answered.set(0);
+        refreshStart = System.nanoTime();
+        service.refresh();
+    }
+}
@@ -11,12 +11,23 @@ import org.mockito.Mockito;
 
 import java.lang.reflect.Field;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
+import java.util.stream.IntStream;
 
 import static java.util.stream.Collectors.toList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.anyLong;
 import static org.mockito.Mockito.anyString;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -57,6 +68,7 @@ class MountTableRefresherServiceTests {
                 .map(RouterState::new)
                 .collect(toList());
         when(routerStore.getCachedRecords()).thenReturn(states);
+        when(routerStore.addMembershipListener(Mockito.any())).thenReturn(states);
 
         service.serviceInit(); // needed for complex class testing, not for now
     }
@@ -80,6 +92,28 @@ class MountTableRefresherServiceTests {
         verify(mockedService, never()).log("Not all router admins updated their cache");
         verify(mockedService).log("Mount table entries cache refresh successCount=4,failureCount=0");
         verify(routerClientsCache, never()).invalidate(anyString());
+        verify(routerClientsCache, times(4)).get(anyString());
+    }
+
+    @Test
+    @DisplayName("Outcomes and latencies are exported after refresh")
+    void exportMetrics() throws IllegalAccessException {
+        // given
+        when(manager.refresh()).thenReturn(true, true, true, false);
+        createManager.set(service, (Function<String, MountTableManager>) adminAddress -> manager);
+        RefreshMetrics.Exporter exporter = mock(RefreshMetrics.Exporter.class);
+        mockedService.setMetricsExporter(exporter);
+
+        // when
+        mockedService.refresh();
+
+        // then
+        verify(exporter).outcome("SUCCESS", 3);
+        verify(exporter).outcome("FAIL", 1);
+        verify(exporter).outcome("TIMEOUT", 0);
+        verify(exporter).latency(Mockito.isNull(), Mockito.eq(4L), anyLong(), anyLong(), anyLong());
+        verify(exporter, times(5)).latency(Mockito.any(), anyLong(), anyLong(), anyLong(), anyLong());
+        assertEquals(0, mockedService.getMetrics().getInFlight());
     }
 
     @Test
@@ -173,4 +207,286 @@ class MountTableRefresherServiceTests {
         verify(mockedService).log("Mount table entries cache refresh successCount=0,failureCount=4");
         verify(routerClientsCache, times(4)).invalidate(anyString());
     }
+
+    @Test
+    @DisplayName("Routers are refreshed on bounded refresh pool")
+    void refreshOnBoundedPool() throws IllegalAccessException {
+        // given
+        int parallelism = 2;
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        Set<String> threadNames = ConcurrentHashMap.newKeySet();
+        when(manager.refresh()).then(invocation -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            threadNames.add(Thread.currentThread().getName());
+            Thread.sleep(20);
+            running.decrementAndGet();
+            return true;
+        });
+
+        MountTableRefresherService bounded = new MountTableRefresherService(parallelism, false);
+        createManager.set(bounded, (Function<String, MountTableManager>) adminAddress -> manager);
+        MountTableRefresherService boundedService = Mockito.spy(bounded);
+        boundedService.setCacheUpdateTimeout(CACHE_UPDATE_TIMEOUT);
+        boundedService.setRouterClientsCache(routerClientsCache);
+        Others.RouterStore store = mock(Others.RouterStore.class);
+        when(store.getCachedRecords()).thenReturn(IntStream.range(0, 10)
+                .mapToObj(i -> new RouterState("router"))
+                .collect(toList()));
+        boundedService.setRouterStore(store);
+
+        // when
+        boundedService.refresh();
+
+        // then
+        verify(boundedService).log("Mount table entries cache refresh successCount=10,failureCount=0");
+        assertTrue(maxRunning.get() <= parallelism, "Too many routers refreshed at once");
+        assertTrue(threadNames.stream().allMatch(name -> name.startsWith("MountTableRefresh_")),
+                "Refresh should not run on common pool: " + threadNames);
+    }
+
+    @Test
+    @DisplayName("Refresh reloads router clients that expired")
+    void reloadExpiredClients() throws IllegalAccessException, InterruptedException {
+        // given
+        when(manager.refresh()).thenReturn(true);
+        createManager.set(service, (Function<String, MountTableManager>) adminAddress -> manager);
+        Others.LoadingCache<String, Others.RouterClient> clients =
+                new Others.LoadingCache<>(adminAddress -> new Others.RouterClient(), 50, 0, 0);
+        states.forEach(state -> clients.add(state.getAdminAddress(), new Others.RouterClient()));
+        mockedService.setRouterClientsCache(clients);
+        Thread.sleep(100);
+        clients.cleanUp();
+        assertEquals(0, clients.size());
+
+        // when
+        mockedService.refresh();
+
+        // then
+        assertEquals(ADDRESSES.size(), clients.size(), "Refreshed routers should have clients again");
+    }
+
+    @Test
+    @DisplayName("Routers queued behind others get their whole timeout")
+    void timeoutStartsWhenRefreshRuns() throws IllegalAccessException {
+        // given
+        long timeout = 200;
+        when(manager.refresh()).then(invocation -> {
+            Thread.sleep(timeout / 2);
+            return true;
+        });
+
+        MountTableRefresherService single = new MountTableRefresherService(1, false);
+        createManager.set(single, (Function<String, MountTableManager>) adminAddress -> manager);
+        MountTableRefresherService singleService = Mockito.spy(single);
+        singleService.setCacheUpdateTimeout(timeout);
+        singleService.setRouterClientsCache(routerClientsCache);
+        Others.RouterStore store = mock(Others.RouterStore.class);
+        when(store.getCachedRecords()).thenReturn(IntStream.range(0, 5)
+                .mapToObj(i -> new RouterState("router"))
+                .collect(toList()));
+        singleService.setRouterStore(store);
+
+        // when
+        singleService.refresh();
+
+        // then
+        verify(singleService, never()).log("Not all router admins updated their cache");
+        verify(singleService).log("Mount table entries cache refresh successCount=5,failureCount=0");
+    }
+
+    @Test
+    @DisplayName("Hanging routers are interrupted and give their threads back")
+    void interruptHangingRouters() throws IllegalAccessException, InterruptedException {
+        // given
+        long timeout = 100;
+        CountDownLatch interrupted = new CountDownLatch(2);
+        when(manager.refresh()).then(invocation -> {
+            try {
+                Thread.sleep(10_000);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+            return true;
+        });
+        MountTableRefresherService hangingService = boundedService(2, timeout, 2);
+
+        // when
+        long start = System.currentTimeMillis();
+        hangingService.refresh();
+        long end = System.currentTimeMillis();
+
+        // then
+        assertTrue(end - start < 1000, "Refresh should return after the timeout");
+        assertTrue(interrupted.await(1, TimeUnit.SECONDS), "Timed out routers should be interrupted");
+        verify(hangingService).log("Mount table entries cache refresh successCount=0,failureCount=2");
+
+        // when
+        when(manager.refresh()).thenReturn(true);
+        hangingService.refresh();
+
+        // then
+        verify(hangingService).log("Mount table entries cache refresh successCount=2,failureCount=0");
+    }
+
+    @Test
+    @DisplayName("Routers that ignore interrupts don't block the refresh")
+    void deadlineForUninterruptibleRouters() throws IllegalAccessException {
+        // given
+        long timeout = 100;
+        CountDownLatch release = new CountDownLatch(1);
+        when(manager.refresh()).then(invocation -> {
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (release.getCount() > 0 && System.currentTimeMillis() < deadline) {
+                try {
+                    release.await(deadline - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+                } catch (InterruptedException ignored) {}
+            }
+            return true;
+        });
+        MountTableRefresherService hangingService = boundedService(2, timeout, 3);
+
+        // when
+        long start = System.currentTimeMillis();
+        hangingService.refresh();
+        long end = System.currentTimeMillis();
+        release.countDown();
+
+        // then
+        assertTrue(end - start < 1000, "Router queued behind hanging ones should time out, not block");
+        verify(hangingService).log("Not all router admins updated their cache");
+        verify(hangingService).log("Mount table entries cache refresh successCount=0,failureCount=3");
+        verify(manager, times(2)).refresh();
+    }
+
+    private MountTableRefresherService boundedService(int parallelism, long timeout, int routers)
+            throws IllegalAccessException {
+        MountTableRefresherService bounded = new MountTableRefresherService(parallelism, false);
+        createManager.set(bounded, (Function<String, MountTableManager>) adminAddress -> manager);
+        MountTableRefresherService boundedService = Mockito.spy(bounded);
+        boundedService.setCacheUpdateTimeout(timeout);
+        boundedService.setRouterClientsCache(routerClientsCache);
+        Others.RouterStore store = mock(Others.RouterStore.class);
+        when(store.getCachedRecords()).thenReturn(IntStream.range(0, routers)
+                .mapToObj(i -> new RouterState("router" + i))
+                .collect(toList()));
+        boundedService.setRouterStore(store);
+        return boundedService;
+    }
+
+    @Test
+    @DisplayName("Explicit refresh reaches every router, triggered one skips routers at current version")
+    void skipUpToDateRouters() throws IllegalAccessException {
+        // given
+        when(manager.refresh()).thenReturn(true);
+        createManager.set(service, (Function<String, MountTableManager>) adminAddress -> manager);
+
+        // when
+        mockedService.refresh();
+        mockedService.refresh();
+        mockedService.requestRefresh();
+
+        // then
+        verify(manager, after(300).times(8)).refresh();
+
+        // when
+        for (int i = 0; i < 10; i++) {
+            mockedService.mountTableChanged();
+        }
+
+        // then
+        verify(mockedService, timeout(1000).times(3))
+                .log("Mount table entries cache refresh successCount=4,failureCount=0");
+        verify(manager, times(12)).refresh();
+        assertTrue(states.stream().allMatch(state -> state.getMountTableVersion() == 11));
+    }
+
+    @Test
+    @DisplayName("Failed router is retried after backoff")
+    void retryFailedRouter() throws IllegalAccessException {
+        // given
+        when(manager.refresh()).thenReturn(true, true, true, false, true);
+        createManager.set(service, (Function<String, MountTableManager>) adminAddress -> manager);
+
+        // when
+        mockedService.refresh();
+        mockedService.requestRefresh();
+
+        // then
+        verify(mockedService).log("Mount table entries cache refresh successCount=3,failureCount=1");
+        verify(manager, after(300).times(4)).refresh();
+        verify(mockedService, timeout(3000))
+                .log("Mount table entries cache refresh successCount=1,failureCount=0");
+        verify(manager, times(5)).refresh();
+        verify(routerClientsCache, times(1)).invalidate(anyString());
+    }
+
+    @Test
+    @DisplayName("New version is sent to a failed router without waiting for its backoff")
+    void resetBackoffOnNewVersion() throws IllegalAccessException {
+        // given
+        when(manager.refresh()).thenReturn(true, true, true, false, true);
+        createManager.set(service, (Function<String, MountTableManager>) adminAddress -> manager);
+        mockedService.refresh();
+
+        // when
+        mockedService.mountTableChanged();
+
+        // then
+        verify(mockedService, timeout(500))
+                .log("Mount table entries cache refresh successCount=4,failureCount=0");
+    }
+
+    @Test
+    @DisplayName("Explicit and triggered refreshes don't overlap")
+    void serializeRefreshes() throws IllegalAccessException {
+        // given
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        when(manager.refresh()).then(invocation -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            Thread.sleep(300);
+            running.decrementAndGet();
+            return true;
+        });
+        createManager.set(service, (Function<String, MountTableManager>) adminAddress -> manager);
+        when(routerStore.getCachedRecords()).thenReturn(List.of(new RouterState("single")));
+
+        // when
+        mockedService.mountTableChanged();
+        mockedService.refresh();
+
+        // then
+        verify(mockedService, after(500).times(1))
+                .log("Mount table entries cache refresh successCount=1,failureCount=0");
+        assertEquals(1, maxRunning.get(), "Refreshes should run one after another");
+    }
+
+    @Test
+    @DisplayName("New router in store is refreshed alone")
+    void refreshNewRouter() throws IllegalAccessException, InterruptedException {
+        // given
+        when(manager.refresh()).thenReturn(true);
+        MountTableRefresherService storeService = new MountTableRefresherService();
+        createManager.set(storeService, (Function<String, MountTableManager>) adminAddress -> manager);
+        Others.RouterStore store = new Others.RouterStore();
+        store.addAll(states);
+        storeService.setRouterStore(store);
+        storeService.serviceInit();
+        storeService.setCacheUpdateTimeout(CACHE_UPDATE_TIMEOUT);
+        storeService.refresh();
+
+        // when
+        store.add(new RouterState("new"));
+
+        // then
+        verify(manager, timeout(1000).times(5)).refresh();
+        long deadline = System.currentTimeMillis() + 1000;
+        while (store.getCachedRecords().stream().anyMatch(state -> state.getMountTableVersion() != 1)
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(store.getCachedRecords().stream().allMatch(state -> state.getMountTableVersion() == 1));
+        storeService.serviceStop();
+    }
 }
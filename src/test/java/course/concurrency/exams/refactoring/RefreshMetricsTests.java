@@ -0,0 +1,103 @@
+package course.concurrency.exams.refactoring;
+
+import course.concurrency.exams.refactoring.MountTableRefresherService.RouterUpdateState;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RefreshMetricsTests {
+
+    @Test
+    @DisplayName("Latency percentiles and outcomes are kept per router")
+    void perRouterMetrics() {
+        RefreshMetrics metrics = new RefreshMetrics();
+        metrics.add("fast");
+        metrics.add("slow");
+
+        for (int i = 0; i < 99; i++) {
+            record(metrics, "fast", 100_000, RouterUpdateState.SUCCESS);
+        }
+        record(metrics, "fast", 5_000_000, RouterUpdateState.TIMEOUT);
+        record(metrics, "slow", 3_000_000, RouterUpdateState.FAIL);
+
+        assertEquals(128, metrics.getLatencyMicros("fast", 0.5));
+        assertEquals(128, metrics.getLatencyMicros("fast", 0.99));
+        assertEquals(8192, metrics.getLatencyMicros("fast", 1));
+        assertEquals(4096, metrics.getLatencyMicros("slow", 0.5));
+        assertEquals(-1, metrics.getLatencyMicros("unknown", 0.5));
+
+        assertEquals(99, metrics.getOutcomeCount(RouterUpdateState.SUCCESS));
+        assertEquals(1, metrics.getOutcomeCount("fast", RouterUpdateState.TIMEOUT));
+        assertEquals(1, metrics.getOutcomeCount("slow", RouterUpdateState.FAIL));
+        assertEquals(0, metrics.getInFlight());
+
+        Map<String, Long> exported = new ConcurrentHashMap<>();
+        metrics.export(new RefreshMetrics.Exporter() {
+            @Override
+            public void inFlight(int count) {
+                exported.put("inFlight", (long) count);
+            }
+
+            @Override
+            public void outcome(String state, long count) {
+                exported.put(state, count);
+            }
+
+            @Override
+            public void latency(String adminAddress, long count, long p50Micros, long p99Micros, long maxMicros) {
+                exported.put(adminAddress == null ? "total" : adminAddress, maxMicros);
+            }
+        });
+        assertEquals(Map.of("inFlight", 0L, "SUCCESS", 99L, "FAIL", 1L, "TIMEOUT", 1L,
+                "total", 5_000L, "fast", 5_000L, "slow", 3_000L), exported);
+    }
+
+    @Test
+    @DisplayName("Recording doesn't allocate once router is known")
+    void allocationFree() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        RefreshMetrics metrics = new RefreshMetrics();
+        String address = "router";
+        metrics.add(address);
+        long threadId = Thread.currentThread().getId();
+
+        for (int i = 0; i < 100_000; i++) {
+            record(metrics, address, i, RouterUpdateState.SUCCESS);
+        }
+
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 100_000; i++) {
+            record(metrics, address, i, RouterUpdateState.SUCCESS);
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        assertTrue(allocated < 1024, "Allocated " + allocated + " bytes");
+    }
+
+    @Test
+    @DisplayName("Refresh of a removed router counts in the total only")
+    void removedRouter() {
+        RefreshMetrics metrics = new RefreshMetrics();
+        metrics.add("router");
+        metrics.remove("router");
+
+        record(metrics, "router", 100_000, RouterUpdateState.SUCCESS);
+
+        assertEquals(1, metrics.getOutcomeCount(RouterUpdateState.SUCCESS));
+        assertEquals(0, metrics.getOutcomeCount("router", RouterUpdateState.SUCCESS));
+        assertEquals(-1, metrics.getLatencyMicros("router", 0.5));
+        assertEquals(128, metrics.getLatencyMicros(0.5));
+    }
+
+    private static void record(RefreshMetrics metrics, String address, long latencyNanos, RouterUpdateState state) {
+        metrics.refreshStarted();
+        metrics.refreshFinished(address, latencyNanos);
+        metrics.outcome(address, state);
+    }
+}
@@ -0,0 +1,100 @@
+package course.concurrency.exams.refactoring;
+
+import course.concurrency.exams.refactoring.Others.RouterState;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Readers walk all {@link #ROUTERS} routers while one thread keeps adding and removing routers.
+ * {@code snapshot} is {@link Others.RouterStore}, {@code locked} an ArrayList behind a read-write lock.
+ * Run with {@code -tg <readers>,1} to see how reads scale with the number of reader threads.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class RouterStoreBenchmarks {
+
+    private static final int ROUTERS = 1000;
+
+    @Param({"snapshot", "locked"})
+    private String store;
+
+    private Others.RouterStore routerStore;
+    private List<RouterState> lockedStates;
+    private ReadWriteLock lock;
+    private RouterState churned;
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(RouterStoreBenchmarks.class.getSimpleName())
+                .warmupIterations(2)
+                .measurementIterations(5)
+                .forks(1)
+                .build();
+
+        new Runner(opt).run();
+    }
+
+    @Setup
+    public void setup() {
+        List<RouterState> states = IntStream.range(0, ROUTERS)
+                .mapToObj(i -> new RouterState("router"))
+                .collect(Collectors.toList());
+        routerStore = new Others.RouterStore();
+        routerStore.addAll(states);
+        lockedStates = new ArrayList<>(states);
+        lock = new ReentrantReadWriteLock();
+        churned = new RouterState("churn");
+    }
+
+    @Benchmark
+    @Group("churn")
+    @GroupThreads(3)
+    public long read() {
+        long versions = 0;
+        if ("snapshot".equals(store)) {
+            for (RouterState state : routerStore.getCachedRecords()) {
+                versions += state.getMountTableVersion();
+            }
+        } else {
+            lock.readLock().lock();
+            try {
+                for (RouterState state : lockedStates) {
+                    versions += state.getMountTableVersion();
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+        return versions;
+    }
+
+    @Benchmark
+    @Group("churn")
+    @GroupThreads(1)
+    public void write() {
+        if ("snapshot".equals(store)) {
+            routerStore.add(churned);
+            routerStore.remove(churned);
+        } else {
+            lock.writeLock().lock();
+            try {
+                lockedStates.add(churned);
+                lockedStates.remove(lockedStates.size() - 1);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+}
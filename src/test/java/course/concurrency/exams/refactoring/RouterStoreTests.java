@@ -0,0 +1,184 @@
+package course.concurrency.exams.refactoring;
+
+import course.concurrency.exams.refactoring.Others.RouterState;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RouterStoreTests {
+
+    @Test
+    @DisplayName("Snapshot doesn't change after membership changes")
+    void immutableSnapshot() {
+        Others.RouterStore store = new Others.RouterStore();
+        RouterState first = new RouterState("router");
+        store.add(first);
+
+        List<RouterState> snapshot = store.getCachedRecords();
+        store.add(new RouterState("router"));
+        store.remove(first);
+
+        assertEquals(List.of(first), snapshot);
+        assertEquals(1, store.size());
+        assertFalse(store.getCachedRecords().contains(first));
+        assertThrows(UnsupportedOperationException.class, () -> snapshot.add(first));
+    }
+
+    @Test
+    @DisplayName("Concurrent writers don't lose routers")
+    void concurrentChurn() throws InterruptedException {
+        Others.RouterStore store = new Others.RouterStore();
+        int poolSize = Runtime.getRuntime().availableProcessors() * 2;
+        int iterations = 1000;
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicInteger brokenSnapshots = new AtomicInteger();
+        AtomicInteger lostRemovals = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(poolSize + 1);
+
+        for (int i = 0; i < poolSize; i++) {
+            executor.submit(() -> {
+                try {
+                    latch.await();
+                } catch (InterruptedException ignored) {}
+                List<RouterState> mine = new ArrayList<>();
+                for (int it = 0; it < iterations; it++) {
+                    RouterState state = new RouterState("router");
+                    store.add(state);
+                    mine.add(state);
+                    if (it % 2 == 0) {
+                        if (!store.remove(mine.remove(0))) {
+                            lostRemovals.incrementAndGet();
+                        }
+                    }
+                }
+            });
+        }
+        executor.submit(() -> {
+            try {
+                latch.await();
+            } catch (InterruptedException ignored) {}
+            for (int it = 0; it < iterations; it++) {
+                if (store.getCachedRecords().stream().anyMatch(state -> state == null)) {
+                    brokenSnapshots.incrementAndGet();
+                }
+            }
+        });
+
+        latch.countDown();
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+
+        assertEquals(poolSize * iterations / 2, store.size());
+        assertEquals(0, brokenSnapshots.get());
+        assertEquals(0, lostRemovals.get());
+    }
+
+    @Test
+    @DisplayName("Listeners get added and removed routers in batches")
+    void membershipListeners() {
+        Others.RouterStore store = new Others.RouterStore();
+        List<List<RouterState>> added = new CopyOnWriteArrayList<>();
+        List<List<RouterState>> removed = new CopyOnWriteArrayList<>();
+        Others.MembershipListener listener = (a, r) -> {
+            if (!a.isEmpty()) {
+                added.add(a);
+            }
+            if (!r.isEmpty()) {
+                removed.add(r);
+            }
+        };
+        store.addMembershipListener(listener);
+
+        List<RouterState> batch = IntStream.range(0, 5)
+                .mapToObj(i -> new RouterState("router"))
+                .collect(Collectors.toList());
+        store.addAll(batch);
+        store.removeAll(List.of(batch.get(0), batch.get(1), new RouterState("unknown")));
+        store.removeMembershipListener(listener);
+        store.remove(batch.get(2));
+
+        assertEquals(List.of(batch), added);
+        assertEquals(List.of(List.of(batch.get(0), batch.get(1))), removed);
+        assertEquals(2, store.size());
+    }
+
+    @Test
+    @DisplayName("Listeners see an add before the remove of the same router")
+    void orderedNotifications() throws InterruptedException {
+        Others.RouterStore store = new Others.RouterStore();
+        Set<RouterState> members = ConcurrentHashMap.newKeySet();
+        AtomicInteger outOfOrder = new AtomicInteger();
+        store.addMembershipListener((added, removed) -> {
+            members.addAll(added);
+            for (RouterState state : removed) {
+                if (!members.remove(state)) {
+                    outOfOrder.incrementAndGet();
+                }
+            }
+        });
+        int iterations = 10_000;
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicBoolean isDone = new AtomicBoolean();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        executor.submit(() -> {
+            try {
+                latch.await();
+            } catch (InterruptedException ignored) {}
+            for (int it = 0; it < iterations; it++) {
+                store.add(new RouterState("router"));
+            }
+            isDone.set(true);
+        });
+        // removes routers as soon as they are published, racing with the notification of their add
+        executor.submit(() -> {
+            try {
+                latch.await();
+            } catch (InterruptedException ignored) {}
+            while (!isDone.get() || store.size() > 0) {
+                store.removeAll(store.getCachedRecords());
+            }
+        });
+
+        latch.countDown();
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+
+        assertEquals(0, outOfOrder.get());
+        assertTrue(members.isEmpty());
+    }
+
+    @Test
+    @DisplayName("New listener gets the routers it won't be told about")
+    void listenerSnapshot() {
+        Others.RouterStore store = new Others.RouterStore();
+        RouterState first = new RouterState("router");
+        store.add(first);
+        List<List<RouterState>> added = new CopyOnWriteArrayList<>();
+
+        List<RouterState> current = store.addMembershipListener((a, r) -> added.add(a));
+        RouterState second = new RouterState("router");
+        store.add(second);
+
+        assertEquals(List.of(first), current);
+        assertEquals(List.of(List.of(second)), added);
+    }
+}
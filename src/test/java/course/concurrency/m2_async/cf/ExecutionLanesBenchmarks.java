@@ -0,0 +1,81 @@
+package course.concurrency.m2_async.cf;
+
+import course.concurrency.m2_async.cf.report.ExecutionLanes;
+import course.concurrency.m2_async.cf.report.ReportServiceCF;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Parallel stream latency while reports are generated in the background.
+ * With {@code common} both lanes are the common pool, like the old ReportServiceCF, and the
+ * stream has to wait for workers blocked in {@link LoadGenerator#work()}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ExecutionLanesBenchmarks {
+
+    private static final int REPORT_CALLERS = 64;
+
+    @Param({"common", "lanes"})
+    private String lanesType;
+
+    private ReportServiceCF reportService;
+    private ExecutorService callers;
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(ExecutionLanesBenchmarks.class.getSimpleName())
+                .warmupIterations(2)
+                .measurementIterations(5)
+                .forks(1)
+                .build();
+
+        new Runner(opt).run();
+    }
+
+    @Setup
+    public void setup() {
+        int processors = Runtime.getRuntime().availableProcessors();
+        ExecutionLanes lanes = "common".equals(lanesType)
+                ? new ExecutionLanes(ForkJoinPool.commonPool(), processors, ForkJoinPool.commonPool(), processors)
+                : new ExecutionLanes();
+        reportService = new ReportServiceCF(lanes);
+
+        callers = Executors.newFixedThreadPool(REPORT_CALLERS);
+        for (int i = 0; i < REPORT_CALLERS; i++) {
+            callers.execute(() -> {
+                while (!Thread.currentThread().isInterrupted()) {
+                    reportService.getReport();
+                }
+            });
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        System.out.println("\n" + reportService.getLanes());
+        callers.shutdownNow();
+        callers.awaitTermination(1, TimeUnit.MINUTES);
+        reportService.shutdown();
+    }
+
+    @Benchmark
+    public long parallelStream() {
+        return IntStream.range(0, 1_000_000).parallel().asLongStream().map(i -> i * i).sum();
+    }
+
+    @Benchmark
+    public int compute() {
+        return LoadGenerator.compute();
+    }
+}
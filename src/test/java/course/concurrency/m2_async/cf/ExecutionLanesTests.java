@@ -0,0 +1,83 @@
+package course.concurrency.m2_async.cf;
+
+import course.concurrency.m2_async.cf.report.ExecutionLanes;
+import course.concurrency.m2_async.cf.report.ReportServiceCF;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ExecutionLanesTests {
+
+    @Test
+    @DisplayName("Lane reports queue depth, active tasks and utilization")
+    public void shouldTrackLaneMetrics() throws InterruptedException {
+        ExecutionLanes lanes = new ExecutionLanes(Executors.newSingleThreadExecutor(), 1,
+                Executors.newSingleThreadExecutor(), 1);
+        ExecutionLanes.Lane io = lanes.io();
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(3);
+
+        for (int i = 0; i < 3; i++) {
+            io.execute(() -> {
+                try {
+                    release.await();
+                    Thread.sleep(50);
+                } catch (InterruptedException ignored) {}
+                done.countDown();
+            });
+        }
+
+        Thread.sleep(100);
+        assertEquals(2, io.getQueueDepth());
+        assertEquals(1, io.getActiveCount());
+
+        release.countDown();
+        assertTrue(done.await(1, TimeUnit.SECONDS));
+        Thread.sleep(10);
+
+        assertEquals(0, io.getQueueDepth());
+        assertEquals(3, io.getCompletedCount());
+        assertTrue(io.getUtilization() > 0.3, "Lane was busy for most of its lifetime");
+        assertEquals(0, lanes.cpu().getCompletedCount());
+        lanes.shutdown();
+    }
+
+    @Test
+    @DisplayName("Report runs blocking sections on io lane and stays off the common pool")
+    public void shouldRouteSectionsToLanes() throws InterruptedException {
+        long commonPoolTasks = ForkJoinPool.commonPool().getStealCount();
+        ReportServiceCF reportService = new ReportServiceCF(new ExecutionLanes(16, false));
+
+        assertNotNull(reportService.getReport());
+        // lane counts a task after its result is already published
+        Thread.sleep(50);
+
+        assertEquals(2, reportService.getLanes().io().getCompletedCount());
+        assertEquals(1, reportService.getLanes().cpu().getCompletedCount());
+        assertEquals(commonPoolTasks, ForkJoinPool.commonPool().getStealCount());
+        reportService.shutdown();
+    }
+
+    @Test
+    @DisplayName("Services without own lanes share pools that outlive them")
+    public void shouldShareDefaultLanes() throws InterruptedException {
+        ReportServiceCF first = new ReportServiceCF();
+        ReportServiceCF second = new ReportServiceCF();
+        assertSame(first.getLanes(), second.getLanes());
+
+        first.shutdown();
+        CountDownLatch done = new CountDownLatch(1);
+        second.getLanes().io().execute(done::countDown);
+
+        assertTrue(done.await(1, TimeUnit.SECONDS), "Shared lanes should ignore shutdown");
+    }
+}
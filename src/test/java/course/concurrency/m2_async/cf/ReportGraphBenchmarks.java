@@ -0,0 +1,103 @@
+package course.concurrency.m2_async.cf;
+
+import course.concurrency.m2_async.cf.report.ReportGraph;
+import course.concurrency.m2_async.cf.report.ReportGraph.Node;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A report of {@link #WIDTH} x {@link #DEPTH} sections, every section is one {@link LoadGenerator#work()}
+ * and depends on all sections of the previous layer. Wall time should stay close to the critical
+ * path ({@code DEPTH} works) as long as the executor has enough threads for a layer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ReportGraphBenchmarks {
+
+    private static final int WIDTH = 8;
+    private static final int DEPTH = 3;
+
+    @Param({"forkjoin", "bounded", "virtual"})
+    private String executorType;
+
+    private ExecutorService executor;
+    private ReportGraph graph;
+    private ReportGraph.Execution last;
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(ReportGraphBenchmarks.class.getSimpleName())
+                .warmupIterations(1)
+                .measurementIterations(3)
+                .forks(1)
+                .build();
+
+        new Runner(opt).run();
+    }
+
+    @Setup
+    public void setup() {
+        executor = createExecutor(executorType);
+
+        ReportGraph.Builder builder = ReportGraph.builder();
+        List<Node<?>> layer = new ArrayList<>();
+        for (int d = 0; d < DEPTH; d++) {
+            Node<?>[] inputs = layer.toArray(new Node<?>[0]);
+            List<Node<?>> next = new ArrayList<>();
+            for (int w = 0; w < WIDTH; w++) {
+                next.add(builder.node("section-" + d + "-" + w, results -> {
+                    LoadGenerator.work();
+                    return Boolean.TRUE;
+                }, inputs));
+            }
+            layer = next;
+        }
+        Node<?>[] sections = layer.toArray(new Node<?>[0]);
+        builder.node("report", results -> sections.length, sections);
+        graph = builder.build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (last != null) {
+            System.out.println("\nwall " + last.getWallMillis() + "ms, critical path "
+                    + last.getCriticalPathMillis() + "ms " + last.getCriticalPath());
+        }
+        if (executor != ForkJoinPool.commonPool()) {
+            executor.shutdownNow();
+        }
+    }
+
+    @Benchmark
+    public ReportGraph.Execution report() {
+        last = graph.run(executor);
+        return last;
+    }
+
+    private static ExecutorService createExecutor(String type) {
+        switch (type) {
+            case "bounded":
+                return Executors.newFixedThreadPool(WIDTH);
+            case "virtual":
+                try {
+                    return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+                } catch (ReflectiveOperationException e) {
+                    // no virtual threads on this runtime, a thread per task is the closest
+                    return Executors.newCachedThreadPool();
+                }
+            default:
+                return ForkJoinPool.commonPool();
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package course.concurrency.m2_async.cf;
+
+import course.concurrency.m2_async.cf.report.ReportGraph;
+import course.concurrency.m2_async.cf.report.ReportGraph.Node;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ReportGraphTests {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(8);
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("Shared input is computed once")
+    public void shouldComputeSharedInputOnce() {
+        AtomicInteger calls = new AtomicInteger();
+        ReportGraph.Builder builder = ReportGraph.builder();
+        Node<Integer> shared = builder.node("shared", calls::incrementAndGet);
+        Node<Integer> left = builder.node("left", r -> r.get(shared) + 1, shared);
+        Node<Integer> right = builder.node("right", r -> r.get(shared) + 2, shared);
+        Node<Integer> sum = builder.node("sum", r -> r.get(left) + r.get(right), left, right);
+        ReportGraph graph = builder.build();
+
+        ReportGraph.Execution execution = graph.run(executor);
+
+        assertEquals(5, execution.get(sum));
+        assertEquals(1, calls.get());
+        assertEquals(2, graph.run(executor).get(shared), "Each run computes its own values");
+    }
+
+    @Test
+    @DisplayName("Independent nodes run in parallel, critical path is reported")
+    public void shouldRunInParallel() {
+        ReportGraph.Builder builder = ReportGraph.builder();
+        Node<String> slow = builder.node("slow", () -> sleep(300, "slow"));
+        Node<String> fast = builder.node("fast", () -> sleep(100, "fast"));
+        Node<String> a = builder.node("a", () -> sleep(200, "a"));
+        Node<String> b = builder.node("b", () -> sleep(200, "b"));
+        Node<String> c = builder.node("c", () -> sleep(200, "c"));
+        Node<String> merge = builder.node("merge", r -> sleep(100, r.get(slow) + r.get(fast)), slow, fast);
+        Node<String> report = builder.node("report", r -> r.get(merge) + r.get(a) + r.get(b) + r.get(c),
+                merge, a, b, c);
+
+        ReportGraph.Execution execution = builder.build().run(executor);
+
+        assertEquals("slowfastabc", execution.get(report));
+        List<String> path = execution.getCriticalPath().stream().map(Node::getName).collect(Collectors.toList());
+        assertEquals(List.of("slow", "merge", "report"), path);
+        assertTrue(execution.getCriticalPathMillis() >= 400);
+        assertTrue(execution.getWallMillis() < 700, "Sections should run in parallel");
+    }
+
+    @Test
+    @DisplayName("Failure of a node fails the run")
+    public void shouldPropagateFailure() {
+        ReportGraph.Builder builder = ReportGraph.builder();
+        Node<Integer> broken = builder.node("broken", () -> {
+            throw new IllegalStateException("no data");
+        });
+        builder.node("report", r -> r.get(broken) + 1, broken);
+        ReportGraph graph = builder.build();
+
+        CompletionException e = assertThrows(CompletionException.class, () -> graph.run(executor));
+        assertTrue(e.getCause() instanceof IllegalStateException);
+    }
+
+    @Test
+    @DisplayName("Inputs must be declared in the same graph")
+    public void shouldRejectForeignInput() {
+        Node<Integer> foreign = ReportGraph.builder().node("foreign", () -> 1);
+        ReportGraph.Builder builder = ReportGraph.builder();
+        builder.node("first", () -> 2);
+
+        assertThrows(IllegalArgumentException.class, () -> builder.node("report", r -> 3, foreign));
+    }
+
+    private static String sleep(long millis, String value) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return value;
+    }
+}
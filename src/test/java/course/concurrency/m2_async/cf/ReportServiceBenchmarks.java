@@ -0,0 +1,118 @@
+package course.concurrency.m2_async.cf;
+
+import course.concurrency.m2_async.cf.report.ExecutionLanes;
+import course.concurrency.m2_async.cf.report.ReportServiceCF;
+import course.concurrency.m2_async.cf.report.ReportServiceExecutors;
+import course.concurrency.m2_async.cf.report.ReportServiceVirtual;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * {@link #calls} concurrent getReport() calls against each service. Every call is given
+ * {@link #WINDOW_SECONDS}, reports that finished inside the window are counted as throughput.
+ * The executors version gets a pool of {@link #POOL_SIZE} threads, its default single thread
+ * would not finish a single round in reasonable time. {@code cf} shares reports in flight,
+ * {@code cf_cached} also keeps items and customers for {@link #FRESHNESS_MILLIS}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ReportServiceBenchmarks {
+
+    private static final int WINDOW_SECONDS = 30;
+    private static final int POOL_SIZE = 256;
+    private static final long FRESHNESS_MILLIS = 10_000;
+
+    @Param({"cf", "cf_cached", "executors", "virtual"})
+    private String service;
+
+    @Param({"10000"})
+    private int calls;
+
+    private Supplier<Object> report;
+    private Runnable shutdown;
+    private ExecutorService callers;
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(ReportServiceBenchmarks.class.getSimpleName())
+                .warmupIterations(0)
+                .measurementIterations(1)
+                .forks(1)
+                .build();
+
+        new Runner(opt).run();
+    }
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        switch (service) {
+            case "executors":
+                ReportServiceExecutors executors = new ReportServiceExecutors(Executors.newFixedThreadPool(POOL_SIZE));
+                report = executors::getReport;
+                shutdown = executors::shutdown;
+                break;
+            case "virtual":
+                ReportServiceVirtual virtual = new ReportServiceVirtual(WINDOW_SECONDS * 1000L);
+                report = virtual::getReport;
+                shutdown = virtual::shutdown;
+                break;
+            case "cf_cached":
+                ReportServiceCF cached = new ReportServiceCF(new ExecutionLanes(), FRESHNESS_MILLIS);
+                report = cached::getReport;
+                shutdown = cached::shutdown;
+                break;
+            default:
+                ReportServiceCF cf = new ReportServiceCF();
+                report = cf::getReport;
+                shutdown = cf::shutdown;
+        }
+        callers = Executors.newCachedThreadPool();
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws InterruptedException {
+        callers.shutdownNow();
+        callers.awaitTermination(1, TimeUnit.MINUTES);
+        shutdown.run();
+    }
+
+    @Benchmark
+    public int reports() throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(calls);
+        AtomicInteger completed = new AtomicInteger();
+
+        for (int i = 0; i < calls; i++) {
+            callers.execute(() -> {
+                try {
+                    start.await();
+                    report.get();
+                    completed.incrementAndGet();
+                } catch (Exception ignored) {
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        done.await(WINDOW_SECONDS, TimeUnit.SECONDS);
+        double seconds = (System.nanoTime() - begin) / 1e9;
+
+        System.out.printf("%n%s: %d of %d reports in %.1fs, %.1f reports/s%n",
+                service, completed.get(), calls, seconds, completed.get() / seconds);
+        return completed.get();
+    }
+}
@@ -0,0 +1,205 @@
+package course.concurrency.m2_async.cf;
+
+import course.concurrency.m2_async.cf.report.Others;
+import course.concurrency.m2_async.cf.report.ReportServiceExecutors;
+import course.concurrency.m2_async.cf.report.ReportServiceVirtual;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ReportServiceVirtualTests {
+
+    @Test
+    @DisplayName("Report is built from both subtasks")
+    public void shouldReturnReport() {
+        ReportServiceVirtual reportService = new ReportServiceVirtual();
+
+        long start = System.currentTimeMillis();
+        Others.Report report = reportService.getReport();
+        long end = System.currentTimeMillis();
+        reportService.shutdown();
+
+        assertNotNull(report);
+        assertTrue(end - start < 4000, "Subtasks should run in parallel");
+    }
+
+    @Test
+    @DisplayName("Failed subtask cancels its sibling")
+    public void shouldCancelSiblingOnFailure() throws InterruptedException {
+        CountDownLatch siblingStarted = new CountDownLatch(1);
+        CountDownLatch siblingInterrupted = new CountDownLatch(1);
+        ReportServiceVirtual reportService = new ReportServiceVirtual() {
+            @Override
+            protected Collection<Others.Item> getItems() {
+                // fail once the sibling is running, a sibling cancelled before its start has nothing to interrupt
+                try {
+                    siblingStarted.await(1, TimeUnit.SECONDS);
+                } catch (InterruptedException ignored) {}
+                throw new IllegalStateException("no items");
+            }
+
+            @Override
+            protected Collection<Others.Customer> getActiveCustomers() {
+                siblingStarted.countDown();
+                return sleepUntilInterrupted(siblingInterrupted);
+            }
+        };
+
+        long start = System.currentTimeMillis();
+        CompletionException e = assertThrows(CompletionException.class, reportService::getReport);
+        long end = System.currentTimeMillis();
+
+        assertTrue(e.getCause() instanceof IllegalStateException);
+        assertTrue(end - start < 1000, "Report should fail right away");
+        assertTrue(siblingInterrupted.await(1, TimeUnit.SECONDS), "Sibling should be cancelled");
+        reportService.shutdown();
+    }
+
+    @Test
+    @DisplayName("Deadline cancels running subtasks")
+    public void shouldFailAfterDeadline() throws InterruptedException {
+        CountDownLatch interrupted = new CountDownLatch(2);
+        ReportServiceVirtual reportService = new ReportServiceVirtual(200) {
+            @Override
+            protected Collection<Others.Item> getItems() {
+                sleepUntilInterrupted(interrupted);
+                return List.of();
+            }
+
+            @Override
+            protected Collection<Others.Customer> getActiveCustomers() {
+                return sleepUntilInterrupted(interrupted);
+            }
+        };
+
+        long start = System.currentTimeMillis();
+        CompletionException e = assertThrows(CompletionException.class, reportService::getReport);
+        long end = System.currentTimeMillis();
+
+        assertTrue(e.getCause() instanceof TimeoutException);
+        assertTrue(end - start < 1000, "Report should fail at deadline");
+        assertTrue(interrupted.await(1, TimeUnit.SECONDS), "Subtasks should be cancelled");
+        reportService.shutdown();
+    }
+
+    @Test
+    @DisplayName("Interrupted work stops instead of returning")
+    public void shouldStopWorkOnInterrupt() throws InterruptedException {
+        AtomicBoolean isStopped = new AtomicBoolean();
+        Thread worker = new Thread(() -> {
+            try {
+                LoadGenerator.work();
+            } catch (CancellationException e) {
+                isStopped.set(Thread.currentThread().isInterrupted());
+            }
+        });
+
+        worker.start();
+        worker.interrupt();
+        worker.join(1000);
+
+        assertTrue(isStopped.get(), "Work should throw and keep the interrupt");
+    }
+
+    @Test
+    @DisplayName("Executors version reports failure instead of empty report")
+    public void shouldPropagateFailureFromExecutors() {
+        ReportServiceExecutors reportService = new ReportServiceExecutors(Executors.newFixedThreadPool(2)) {
+            @Override
+            protected Collection<Others.Item> getItems() {
+                throw new IllegalStateException("no items");
+            }
+
+            @Override
+            protected Collection<Others.Customer> getActiveCustomers() {
+                return List.of();
+            }
+        };
+
+        CompletionException e = assertThrows(CompletionException.class, reportService::getReport);
+        assertTrue(e.getCause() instanceof IllegalStateException);
+        reportService.shutdown();
+    }
+
+    @Test
+    @DisplayName("Concurrent calls share one report in both versions")
+    public void shouldCoalesceConcurrentReports() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        ReportServiceVirtual virtual = new ReportServiceVirtual() {
+            @Override
+            protected Collection<Others.Item> getItems() {
+                return awaitRelease(release);
+            }
+
+            @Override
+            protected Collection<Others.Customer> getActiveCustomers() {
+                return List.of();
+            }
+        };
+        ReportServiceExecutors executors = new ReportServiceExecutors(Executors.newFixedThreadPool(2)) {
+            @Override
+            protected Collection<Others.Item> getItems() {
+                return awaitRelease(release);
+            }
+
+            @Override
+            protected Collection<Others.Customer> getActiveCustomers() {
+                return List.of();
+            }
+        };
+        int callers = 10;
+        ExecutorService executor = Executors.newFixedThreadPool(callers * 2);
+
+        for (int i = 0; i < callers; i++) {
+            executor.submit(virtual::getReport);
+            executor.submit(executors::getReport);
+        }
+
+        // the load is held until everyone else has joined it
+        long deadline = System.currentTimeMillis() + 5000;
+        while ((virtual.getReportFlight().getCoalescedCount() < callers - 1
+                || executors.getReportFlight().getCoalescedCount() < callers - 1)
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        release.countDown();
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+        virtual.shutdown();
+        executors.shutdown();
+
+        assertEquals(1, virtual.getReportFlight().getLoadCount());
+        assertEquals(1, executors.getReportFlight().getLoadCount());
+    }
+
+    private static Collection<Others.Item> awaitRelease(CountDownLatch release) {
+        try {
+            release.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ignored) {}
+        return List.of();
+    }
+
+    private static <T> Collection<T> sleepUntilInterrupted(CountDownLatch interrupted) {
+        try {
+            Thread.sleep(10_000);
+        } catch (InterruptedException e) {
+            interrupted.countDown();
+        }
+        return List.of();
+    }
+}
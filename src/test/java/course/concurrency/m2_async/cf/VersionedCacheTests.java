@@ -0,0 +1,194 @@
+package course.concurrency.m2_async.cf;
+
+import course.concurrency.m2_async.cf.report.ExecutionLanes;
+import course.concurrency.m2_async.cf.report.ReportServiceCF;
+import course.concurrency.m2_async.cf.report.VersionedCache;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class VersionedCacheTests {
+
+    @Test
+    @DisplayName("Concurrent callers share one load")
+    public void shouldCoalesceConcurrentLoads() throws InterruptedException {
+        AtomicInteger loads = new AtomicInteger();
+        VersionedCache<Integer> cache = new VersionedCache<>(() -> {
+            sleep(300);
+            return loads.incrementAndGet();
+        }, 0);
+        int poolSize = 50;
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicInteger wrongValues = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(poolSize);
+
+        for (int i = 0; i < poolSize; i++) {
+            executor.submit(() -> {
+                try {
+                    latch.await();
+                } catch (InterruptedException ignored) {}
+                if (cache.get() != 1) {
+                    wrongValues.incrementAndGet();
+                }
+            });
+        }
+
+        latch.countDown();
+        executor.shutdown();
+        executor.awaitTermination(5, TimeUnit.SECONDS);
+
+        assertEquals(1, loads.get());
+        assertEquals(0, wrongValues.get());
+        assertEquals(poolSize - 1, cache.getCoalescedCount() + cache.getHitCount());
+        assertEquals(2, cache.get(), "Zero freshness doesn't keep the value");
+    }
+
+    @Test
+    @DisplayName("Fresh value is reused, stale value is reloaded with a new version")
+    public void shouldReloadAfterFreshness() throws InterruptedException {
+        AtomicInteger loads = new AtomicInteger();
+        VersionedCache<Integer> cache = new VersionedCache<>(loads::incrementAndGet, 100);
+
+        assertEquals(1, cache.get());
+        assertEquals(1, cache.getVersioned().getVersion());
+        assertEquals(1, cache.getHitCount());
+
+        Thread.sleep(150);
+        assertEquals(2, cache.getVersioned().getVersion());
+
+        cache.invalidate();
+        assertEquals(3, cache.get());
+        assertEquals(3, cache.getLoadCount());
+    }
+
+    @Test
+    @DisplayName("Failed load fails the callers and is retried")
+    public void shouldRetryAfterFailure() {
+        AtomicInteger loads = new AtomicInteger();
+        VersionedCache<Integer> cache = new VersionedCache<>(() -> {
+            if (loads.incrementAndGet() == 1) {
+                throw new IllegalStateException("no data");
+            }
+            return 42;
+        }, 1000);
+
+        CompletionException e = assertThrows(CompletionException.class, cache::get);
+        assertTrue(e.getCause() instanceof IllegalStateException);
+        assertEquals(42, cache.get());
+    }
+
+    @Test
+    @DisplayName("Invalidation during a load is not lost")
+    public void shouldReloadAfterInvalidationDuringLoad() throws InterruptedException {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        VersionedCache<Integer> cache = new VersionedCache<>(() -> {
+            int load = loads.incrementAndGet();
+            if (load == 1) {
+                loading.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException ignored) {}
+            }
+            return load;
+        }, 60_000);
+
+        Thread first = new Thread(cache::get);
+        first.start();
+        assertTrue(loading.await(1, TimeUnit.SECONDS));
+
+        cache.invalidate();
+        assertEquals(2, cache.get(), "Caller after invalidation should not join the older load");
+        release.countDown();
+        first.join(1000);
+
+        assertEquals(2, cache.get(), "Older load should not replace the newer value");
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    @DisplayName("Caller waiting for a shared load can be interrupted")
+    public void shouldStopWaitingOnInterrupt() throws InterruptedException {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        VersionedCache<Integer> cache = new VersionedCache<>(() -> {
+            loading.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException ignored) {}
+            return 1;
+        }, 0);
+        new Thread(cache::get).start();
+        assertTrue(loading.await(1, TimeUnit.SECONDS));
+
+        AtomicBoolean isCancelled = new AtomicBoolean();
+        Thread waiter = new Thread(() -> {
+            try {
+                cache.get();
+            } catch (CancellationException e) {
+                isCancelled.set(Thread.currentThread().isInterrupted());
+            }
+        });
+        waiter.start();
+        Thread.sleep(50);
+        waiter.interrupt();
+        waiter.join(1000);
+
+        assertTrue(isCancelled.get(), "Waiter should stop and keep the interrupt");
+        release.countDown();
+    }
+
+    @Test
+    @DisplayName("Concurrent reports share items and customers")
+    public void shouldShareReport() throws InterruptedException {
+        ReportServiceCF reportService = new ReportServiceCF(new ExecutionLanes(16, false), 60_000);
+        int poolSize = 100;
+        CountDownLatch latch = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(poolSize);
+
+        for (int i = 0; i < poolSize; i++) {
+            executor.submit(() -> {
+                try {
+                    latch.await();
+                } catch (InterruptedException ignored) {}
+                reportService.getReport();
+            });
+        }
+
+        long start = System.currentTimeMillis();
+        latch.countDown();
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+        long end = System.currentTimeMillis();
+
+        assertTrue(end - start < 4000, "Callers should wait for one report");
+        assertEquals(1, reportService.getReportFlight().getLoadCount());
+
+        start = System.currentTimeMillis();
+        reportService.getReport();
+        end = System.currentTimeMillis();
+        assertTrue(end - start < 500, "Fresh items and customers should be reused");
+        reportService.shutdown();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
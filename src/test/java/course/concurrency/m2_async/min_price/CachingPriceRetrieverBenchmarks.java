@@ -0,0 +1,90 @@
+package course.concurrency.m2_async.min_price;
+
+import course.concurrency.m2_async.cf.min_price.CachingPriceRetriever;
+import course.concurrency.m2_async.cf.min_price.PriceRetriever;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Price lookups with a Zipfian item distribution: a few hot items get most requests.
+ * The shop answers in {@link #SHOP_MILLIS}, hit rate and latencies are printed after every trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(8)
+public class CachingPriceRetrieverBenchmarks {
+
+    private static final long SHOP_MILLIS = 1;
+    private static final int ITEMS = 100_000;
+    private static final int SHOPS = 10;
+
+    @Param({"0.8", "1.2"})
+    private double skew;
+
+    @Param({"1000", "10000"})
+    private int cacheSize;
+
+    private double[] cumulative;
+    private CachingPriceRetriever cache;
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(CachingPriceRetrieverBenchmarks.class.getSimpleName())
+                .warmupIterations(2)
+                .measurementIterations(5)
+                .forks(1)
+                .build();
+
+        new Runner(opt).run();
+    }
+
+    @Setup
+    public void setup() {
+        cumulative = new double[ITEMS];
+        double sum = 0;
+        for (int i = 0; i < ITEMS; i++) {
+            sum += 1 / Math.pow(i + 1, skew);
+            cumulative[i] = sum;
+        }
+        for (int i = 0; i < ITEMS; i++) {
+            cumulative[i] /= sum;
+        }
+
+        PriceRetriever shop = new PriceRetriever() {
+            @Override
+            public double getPrice(long itemId, long shopId) {
+                try {
+                    Thread.sleep(SHOP_MILLIS);
+                } catch (InterruptedException ignored) {}
+                return itemId + shopId;
+            }
+        };
+        cache = new CachingPriceRetriever(shop, 1_000, 5_000, cacheSize);
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.out.printf("%nhit rate %.3f, lookup %.4f ms, load %.4f ms%n",
+                cache.getHitRate(), cache.getAverageLookupMillis(), cache.getAverageLoadMillis());
+        cache.shutdown();
+    }
+
+    @Benchmark
+    public double getPrice() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return cache.getPrice(nextItem(random), random.nextInt(SHOPS));
+    }
+
+    private long nextItem(ThreadLocalRandom random) {
+        int index = Arrays.binarySearch(cumulative, random.nextDouble());
+        return index >= 0 ? index : Math.min(-index - 1, ITEMS - 1);
+    }
+}
@@ -0,0 +1,191 @@
+package course.concurrency.m2_async.min_price;
+
+import course.concurrency.m2_async.cf.min_price.CachingPriceRetriever;
+import course.concurrency.m2_async.cf.min_price.PriceRetriever;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class CachingPriceRetrieverTests {
+
+    private PriceRetriever priceRetriever;
+    private CachingPriceRetriever cache;
+
+    @BeforeEach
+    public void setup() {
+        priceRetriever = mock(PriceRetriever.class);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        cache.shutdown();
+    }
+
+    @Test
+    @DisplayName("Fresh price is served from cache")
+    public void shouldHitFreshPrice() {
+        when(priceRetriever.getPrice(anyLong(), anyLong())).thenReturn(10d, 20d);
+        cache = new CachingPriceRetriever(priceRetriever, 10_000, 0, 100);
+
+        assertEquals(10d, cache.getPrice(1L, 1L));
+        assertEquals(10d, cache.getPrice(1L, 1L));
+        assertEquals(20d, cache.getPrice(1L, 2L), "Shops are cached separately");
+
+        assertEquals(1, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+        verify(priceRetriever, times(2)).getPrice(anyLong(), anyLong());
+    }
+
+    @Test
+    @DisplayName("Stale price is served while refreshing")
+    public void shouldRevalidateStalePrice() throws InterruptedException {
+        when(priceRetriever.getPrice(anyLong(), anyLong())).thenReturn(10d, 20d);
+        cache = new CachingPriceRetriever(priceRetriever, 20, 10_000, 100);
+
+        assertEquals(10d, cache.getPrice(1L, 1L));
+        Thread.sleep(50);
+        assertEquals(10d, cache.getPrice(1L, 1L), "Stale price should be returned right away");
+
+        long deadline = System.currentTimeMillis() + 1_000;
+        while (cache.getPrice(1L, 1L) != 20d && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(20d, cache.getPrice(1L, 1L), "Price should be refreshed in background");
+        assertTrue(cache.getStaleHitCount() >= 1);
+    }
+
+    @Test
+    @DisplayName("Expired price is loaded again")
+    public void shouldReloadExpiredPrice() throws InterruptedException {
+        when(priceRetriever.getPrice(anyLong(), anyLong())).thenReturn(10d, 20d);
+        cache = new CachingPriceRetriever(priceRetriever, 10, 0, 100);
+
+        assertEquals(10d, cache.getPrice(1L, 1L));
+        Thread.sleep(30);
+        assertEquals(20d, cache.getPrice(1L, 1L));
+        assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    @DisplayName("Concurrent misses load once")
+    public void shouldLoadOnceForConcurrentMisses() throws InterruptedException {
+        AtomicInteger loads = new AtomicInteger();
+        when(priceRetriever.getPrice(anyLong(), anyLong())).thenAnswer(inv -> {
+            loads.incrementAndGet();
+            Thread.sleep(100);
+            return 10d;
+        });
+        cache = new CachingPriceRetriever(priceRetriever, 10_000, 0, 100);
+
+        int callers = 20;
+        CountDownLatch latch = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        AtomicInteger correct = new AtomicInteger();
+        for (int i = 0; i < callers; i++) {
+            executor.submit(() -> {
+                try {
+                    latch.await();
+                } catch (InterruptedException ignored) {}
+                if (cache.getPrice(1L, 1L) == 10d) {
+                    correct.incrementAndGet();
+                }
+            });
+        }
+
+        latch.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(1, loads.get());
+        assertEquals(callers, correct.get());
+    }
+
+    @Test
+    @DisplayName("Cache size is bounded")
+    public void shouldEvictOldest() {
+        when(priceRetriever.getPrice(anyLong(), anyLong())).thenReturn(10d);
+        cache = new CachingPriceRetriever(priceRetriever, 10_000, 0, 10);
+
+        for (long item = 0; item < 100; item++) {
+            cache.getPrice(item, 1L);
+        }
+
+        assertEquals(10, cache.size());
+        assertEquals(90, cache.getEvictionCount());
+    }
+
+    @Test
+    @DisplayName("Failed load doesn't leave a second place in the eviction order")
+    public void shouldEvictOncePerKeyAfterFailedLoad() {
+        when(priceRetriever.getPrice(anyLong(), anyLong()))
+                .thenThrow(new IllegalStateException("shop is down"))
+                .thenReturn(10d);
+        cache = new CachingPriceRetriever(priceRetriever, 10_000, 0, 10);
+
+        assertThrows(IllegalStateException.class, () -> cache.getPrice(0L, 1L));
+        cache.getPrice(0L, 1L);
+        for (long item = 1; item <= 10; item++) {
+            cache.getPrice(item, 1L);
+        }
+        cache.getPrice(0L, 1L);
+        long misses = cache.getMissCount();
+
+        assertEquals(10d, cache.getPrice(0L, 1L));
+        assertEquals(misses, cache.getMissCount(), "Key inserted again should not be evicted right away");
+        assertEquals(10, cache.size());
+    }
+
+    @Test
+    @DisplayName("Caller waiting for another load can be interrupted")
+    public void shouldStopWaitingOnInterrupt() throws InterruptedException {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(priceRetriever.getPrice(anyLong(), anyLong())).thenAnswer(inv -> {
+            loading.countDown();
+            release.await();
+            return 10d;
+        });
+        cache = new CachingPriceRetriever(priceRetriever, 10_000, 0, 100);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        executor.submit(() -> cache.getPrice(1L, 1L));
+        assertTrue(loading.await(1, TimeUnit.SECONDS));
+
+        AtomicBoolean isInterrupted = new AtomicBoolean();
+        CountDownLatch returned = new CountDownLatch(1);
+        Thread waiter = new Thread(() -> {
+            if (Double.isNaN(cache.getPrice(1L, 1L))) {
+                isInterrupted.set(Thread.currentThread().isInterrupted());
+            }
+            returned.countDown();
+        });
+        waiter.start();
+        Thread.sleep(50);
+        waiter.interrupt();
+
+        try {
+            assertTrue(returned.await(5, TimeUnit.SECONDS), "Waiter should return on interrupt");
+            assertTrue(isInterrupted.get(), "Interrupt should be kept");
+        } finally {
+            // a loader left blocked in the mock would leak into the next tests
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+}
@@ -1,16 +1,25 @@
 package course.concurrency.m2_async.min_price;
 
+import course.concurrency.m2_async.cf.min_price.LongDoubleMap;
 import course.concurrency.m2_async.cf.min_price.PriceAggregator;
+import course.concurrency.m2_async.cf.min_price.PriceRequestScheduler;
 import course.concurrency.m2_async.cf.min_price.PriceRetriever;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.IntStream;
@@ -19,6 +28,8 @@ import java.util.stream.LongStream;
 import static java.util.stream.Collectors.toList;
 import static java.util.stream.Collectors.toSet;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.mock;
@@ -38,6 +49,12 @@ public class PriceAggregatorTests {
         randomItemId = ThreadLocalRandom.current().nextLong();
     }
 
+    @AfterEach
+    public void tearDown() {
+        // scheduler threads and their sleeping requests would otherwise run into the next tests
+        priceAggregator.shutdown();
+    }
+
     @Test
     @DisplayName("Every shop responds")
     public void shouldReturnMin() {
@@ -221,4 +238,268 @@ public class PriceAggregatorTests {
         assertEquals(expectedMinPrice, min, "Minimal price is evaluated incorrectly");
         assertTrue((end - start) < SLA, "Method evaluated too long");
     }
+
+    @Test
+    @DisplayName("Stream reports improved minimums")
+    public void shouldStreamImprovedMin() {
+        int shopCount = 20;
+        PriceRetriever priceRetriever = mock(PriceRetriever.class);
+        when(priceRetriever.getPrice(anyLong(), anyLong())).thenAnswer(inv -> {
+            long shopId = inv.getArgument(1);
+            Thread.sleep(shopId * 10);
+            return 1000d - shopId;
+        });
+        priceAggregator.setPriceRetriever(priceRetriever);
+        priceAggregator.setShops(LongStream.range(0, shopCount).boxed().collect(toList()));
+        List<Double> improvements = new CopyOnWriteArrayList<>();
+
+        long start = System.currentTimeMillis();
+        double min = priceAggregator.getMinPriceStream(randomItemId, improvements::add).join();
+        long end = System.currentTimeMillis();
+
+        assertEquals(1000d - (shopCount - 1), min, "Minimal price is evaluated incorrectly");
+        assertEquals(min, improvements.get(improvements.size() - 1));
+        for (int i = 1; i < improvements.size(); i++) {
+            assertTrue(improvements.get(i) < improvements.get(i - 1), "Improvements should decrease");
+        }
+        assertTrue((end - start) < SLA, "Method evaluated too long");
+    }
+
+    @Test
+    @DisplayName("Stream stops at good enough price")
+    public void shouldStopAtGoodEnoughPrice() {
+        PriceRetriever priceRetriever = mock(PriceRetriever.class);
+        when(priceRetriever.getPrice(anyLong(), anyLong())).thenAnswer(inv -> {
+            long shopId = inv.getArgument(1);
+            if (shopId == 0) {
+                return 5d;
+            }
+            Thread.sleep(SLA * 2);
+            return 1d;
+        });
+        priceAggregator.setPriceRetriever(priceRetriever);
+        priceAggregator.setShops(LongStream.range(0, 10).boxed().collect(toList()));
+
+        long start = System.currentTimeMillis();
+        double min = priceAggregator.getMinPriceStream(randomItemId, price -> {}, 10d, 10).join();
+        long end = System.currentTimeMillis();
+
+        assertEquals(5d, min, "Minimal price is evaluated incorrectly");
+        assertTrue((end - start) < SLA / 2, "Stream should stop at the first good enough price");
+    }
+
+    @Test
+    @DisplayName("Failing callback doesn't stop later reports or delay the result")
+    public void shouldSurviveFailingCallback() {
+        PriceRetriever priceRetriever = mock(PriceRetriever.class);
+        when(priceRetriever.getPrice(anyLong(), anyLong())).thenAnswer(inv -> {
+            long shopId = inv.getArgument(1);
+            if (shopId >= 5) {
+                Thread.sleep(SLA * 2);
+            }
+            Thread.sleep(shopId * 50);
+            return 100d - shopId;
+        });
+        priceAggregator.setPriceRetriever(priceRetriever);
+        priceAggregator.setShops(LongStream.range(0, 10).boxed().collect(toList()));
+        List<Double> improvements = new CopyOnWriteArrayList<>();
+
+        long start = System.currentTimeMillis();
+        double min = priceAggregator.getMinPriceStream(randomItemId, price -> {
+            if (price == 100d) {
+                throw new IllegalStateException("subscriber is broken");
+            }
+            improvements.add(price);
+        }, 96d, 10).join();
+        long end = System.currentTimeMillis();
+
+        assertEquals(96d, min);
+        assertEquals(List.of(99d, 98d, 97d, 96d), improvements);
+        assertTrue((end - start) < SLA / 2, "Result should not wait for the SLA");
+    }
+
+    @Test
+    @DisplayName("Stream interrupts shops that haven't answered once it stops")
+    public void shouldCancelOutstandingRequests() throws InterruptedException {
+        int shopCount = 10;
+        CountDownLatch interrupted = new CountDownLatch(shopCount - 1);
+        PriceRetriever priceRetriever = mock(PriceRetriever.class);
+        when(priceRetriever.getPrice(anyLong(), anyLong())).thenAnswer(inv -> {
+            long shopId = inv.getArgument(1);
+            if (shopId == 0) {
+                return 5d;
+            }
+            try {
+                Thread.sleep(SLA * 2);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+            return 1d;
+        });
+        priceAggregator.setPriceRetriever(priceRetriever);
+        priceAggregator.setShops(LongStream.range(0, shopCount).boxed().collect(toList()));
+
+        double min = priceAggregator.getMinPriceStream(randomItemId, price -> {}, 10d, shopCount).join();
+
+        assertEquals(5d, min, "Minimal price is evaluated incorrectly");
+        assertTrue(interrupted.await(SLA / 2, TimeUnit.MILLISECONDS), "Outstanding requests should be interrupted");
+    }
+
+    @Test
+    @DisplayName("Stream stops at quorum")
+    public void shouldStopAtQuorum() {
+        PriceRetriever priceRetriever = mock(PriceRetriever.class);
+        when(priceRetriever.getPrice(anyLong(), anyLong())).thenAnswer(inv -> {
+            long shopId = inv.getArgument(1);
+            if (shopId < 3) {
+                return 100d + shopId;
+            }
+            Thread.sleep(SLA * 2);
+            return 1d;
+        });
+        priceAggregator.setPriceRetriever(priceRetriever);
+        priceAggregator.setShops(LongStream.range(0, 10).boxed().collect(toList()));
+
+        long start = System.currentTimeMillis();
+        double min = priceAggregator.getMinPriceStream(randomItemId, price -> {}, 0d, 3).join();
+        long end = System.currentTimeMillis();
+
+        assertEquals(100d, min, "Minimal price is evaluated incorrectly");
+        assertTrue((end - start) < SLA / 2, "Stream should stop at quorum");
+    }
+
+    @Test
+    @DisplayName("Batch lookup groups items per shop")
+    public void shouldReturnMinPricesInBatches() {
+        int shopCount = 5;
+        int itemCount = 10_000;
+        int batchSize = 500;
+        int maxInFlight = 2;
+        AtomicInteger requestCount = new AtomicInteger();
+        Map<Long, AtomicInteger> inFlight = new ConcurrentHashMap<>();
+        AtomicInteger maxObservedInFlight = new AtomicInteger();
+
+        priceAggregator.setShops(LongStream.range(0, shopCount).boxed().collect(toList()));
+        priceAggregator.setBatchSize(batchSize);
+        priceAggregator.setMaxInFlightPerShop(maxInFlight);
+        priceAggregator.setBatchPriceRetriever((itemIds, shopId) -> {
+            AtomicInteger shopInFlight = inFlight.computeIfAbsent(shopId, id -> new AtomicInteger());
+            maxObservedInFlight.accumulateAndGet(shopInFlight.incrementAndGet(), Math::max);
+            requestCount.incrementAndGet();
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException ignored) {}
+            shopInFlight.decrementAndGet();
+            return Arrays.stream(itemIds).mapToDouble(itemId -> itemId % 7 == 0 ? Double.NaN : itemId + shopId).toArray();
+        });
+        List<Long> items = LongStream.range(0, itemCount).boxed().collect(toList());
+
+        long start = System.currentTimeMillis();
+        LongDoubleMap prices = priceAggregator.getMinPrices(items);
+        long end = System.currentTimeMillis();
+
+        assertEquals(itemCount - (itemCount + 6) / 7, prices.size());
+        assertEquals(1d, prices.get(1L), "Minimal price is evaluated incorrectly");
+        assertEquals(9_999d, prices.get(9_999L), "Minimal price is evaluated incorrectly");
+        assertTrue(Double.isNaN(prices.get(7L)), "Item without prices should be missing");
+        assertEquals(shopCount * itemCount / batchSize, requestCount.get());
+        assertTrue(maxObservedInFlight.get() <= maxInFlight, "Too many requests per shop");
+        assertTrue((end - start) < SLA, "Method evaluated too long");
+    }
+
+    @Test
+    @DisplayName("Batch settings below one are rejected")
+    public void shouldRejectEmptyBatches() {
+        assertThrows(IllegalArgumentException.class, () -> priceAggregator.setBatchSize(0));
+        assertThrows(IllegalArgumentException.class, () -> priceAggregator.setMaxInFlightPerShop(0));
+    }
+
+    @Test
+    @DisplayName("Slow response is hedged after shop's p95")
+    public void shouldHedgeSlowRequest() {
+        AtomicInteger calls = new AtomicInteger();
+        priceAggregator.setShops(List.of(1L));
+        priceAggregator.setPriceRetriever(new PriceRetriever() {
+            @Override
+            public double getPrice(long itemId, long shopId) {
+                // every 30th call stalls past the SLA, the rest answer quickly
+                if (calls.incrementAndGet() == 30) {
+                    try {
+                        Thread.sleep(5000);
+                    } catch (InterruptedException ignored) {}
+                }
+                return 10;
+            }
+        });
+
+        for (int i = 0; i < 29; i++) {
+            assertEquals(10d, priceAggregator.getMinPriceHedged(randomItemId));
+        }
+
+        long start = System.currentTimeMillis();
+        double min = priceAggregator.getMinPriceHedged(randomItemId);
+        long end = System.currentTimeMillis();
+
+        assertEquals(10d, min, "Hedged request should answer");
+        assertEquals(31, calls.get());
+        assertTrue((end - start) < SLA / 2, "Hedge should be sent long before SLA");
+    }
+
+    @Test
+    @DisplayName("Failing shop is skipped by circuit breaker")
+    public void shouldSkipFailingShop() {
+        Map<Long, AtomicInteger> calls = new ConcurrentHashMap<>();
+        priceAggregator.setShops(List.of(1L, 2L));
+        priceAggregator.setPriceRetriever(new PriceRetriever() {
+            @Override
+            public double getPrice(long itemId, long shopId) {
+                calls.computeIfAbsent(shopId, id -> new AtomicInteger()).incrementAndGet();
+                if (shopId == 1L) {
+                    throw new IllegalStateException();
+                }
+                return 20;
+            }
+        });
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals(20d, priceAggregator.getMinPriceHedged(randomItemId));
+        }
+
+        assertEquals(5, calls.get(1L).get(), "Breaker should open after 5 failures");
+        assertEquals(10, calls.get(2L).get());
+        assertTrue(priceAggregator.getShopHealth().isOpen(1L));
+    }
+
+    @Test
+    @DisplayName("Local rejections don't open the circuit breaker")
+    public void shouldNotBlameShopForRejections() {
+        PriceRequestScheduler scheduler = new PriceRequestScheduler(SLA, 1, 1, 0, false);
+        priceAggregator.shutdown();
+        priceAggregator = new PriceAggregator(scheduler);
+        AtomicInteger calls = new AtomicInteger();
+        priceAggregator.setShops(List.of(1L));
+        priceAggregator.setPriceRetriever(new PriceRetriever() {
+            @Override
+            public double getPrice(long itemId, long shopId) {
+                calls.incrementAndGet();
+                return 10;
+            }
+        });
+        CountDownLatch release = new CountDownLatch(1);
+        scheduler.submit(2L, () -> {
+            try {
+                release.await();
+            } catch (InterruptedException ignored) {}
+            return 1d;
+        }, Double.NaN);
+
+        for (int i = 0; i < 10; i++) {
+            assertTrue(Double.isNaN(priceAggregator.getMinPriceHedged(randomItemId)));
+        }
+        release.countDown();
+
+        assertEquals(0, calls.get());
+        assertEquals(10, scheduler.getRejectedCount());
+        assertFalse(priceAggregator.getShopHealth().isOpen(1L), "Rejections should not open breaker");
+    }
 }
@@ -0,0 +1,216 @@
+package course.concurrency.m2_async.min_price;
+
+import course.concurrency.m2_async.cf.min_price.PriceAggregator;
+import course.concurrency.m2_async.cf.min_price.PriceRequestScheduler;
+import course.concurrency.m2_async.cf.min_price.PriceRetriever;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PriceRequestSchedulerTests {
+
+    private static final long SLA = 300;
+    private static final long SLACK = 200;
+
+    private PriceRequestScheduler scheduler;
+
+    @AfterEach
+    public void tearDown() {
+        scheduler.shutdown();
+    }
+
+    @Test
+    @DisplayName("Slow request is interrupted at SLA")
+    public void shouldInterruptAtSla() throws InterruptedException {
+        scheduler = new PriceRequestScheduler(SLA, 10, 10, false);
+        CountDownLatch interrupted = new CountDownLatch(1);
+
+        CompletableFuture<Double> price = scheduler.submit(1L, () -> {
+            try {
+                Thread.sleep(SLA * 10);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+            return 1d;
+        }, Double.NaN);
+
+        assertTrue(Double.isNaN(price.join()));
+        assertTrue(interrupted.await(SLACK, TimeUnit.MILLISECONDS), "Request should be interrupted");
+        assertEquals(1, scheduler.getTimeoutCount());
+        awaitNoInFlight();
+    }
+
+    @Test
+    @DisplayName("Requests over the shop limit wait for a free slot")
+    public void shouldLimitPerShop() {
+        scheduler = new PriceRequestScheduler(SLA, 10, 2, false);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+
+        List<CompletableFuture<Double>> prices = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            prices.add(scheduler.submit(1L, () -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    release.await();
+                } catch (InterruptedException ignored) {
+                } finally {
+                    running.decrementAndGet();
+                }
+                return 1d;
+            }, Double.NaN));
+        }
+        CompletableFuture<Double> otherShop = scheduler.submit(2L, () -> 2d, Double.NaN);
+
+        assertEquals(2d, otherShop.join());
+        assertEquals(1, scheduler.getQueuedCount());
+        release.countDown();
+
+        prices.forEach(price -> assertEquals(1d, price.join()));
+        assertEquals(2, maxRunning.get());
+        assertEquals(0, scheduler.getRejectedCount());
+    }
+
+    @Test
+    @DisplayName("Request that can't start before the SLA is rejected")
+    public void shouldRejectWhenDeadlineIsMissed() throws InterruptedException {
+        scheduler = new PriceRequestScheduler(SLA, 10, 1, false);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicBoolean isCalled = new AtomicBoolean();
+
+        // ignores the interrupt and keeps the shop busy past the SLA
+        CompletableFuture<Double> slow = scheduler.submit(1L, () -> {
+            while (release.getCount() > 0) {
+                try {
+                    release.await();
+                } catch (InterruptedException ignored) {}
+            }
+            return 1d;
+        }, Double.NaN);
+        CompletableFuture<Double> queued = scheduler.submit(1L, () -> {
+            isCalled.set(true);
+            return 2d;
+        }, Double.NaN);
+
+        assertTrue(Double.isNaN(slow.join()));
+        assertTrue(Double.isNaN(queued.join()));
+        release.countDown();
+        awaitNoInFlight();
+        assertFalse(isCalled.get(), "Rejected request should not run");
+        assertEquals(1, scheduler.getRejectedCount());
+        assertEquals(1, scheduler.getTimeoutCount());
+    }
+
+    @Test
+    @DisplayName("Request is rejected at once when the queue is full")
+    public void shouldRejectWhenQueueIsFull() {
+        scheduler = new PriceRequestScheduler(SLA, 10, 1, 1, false);
+        CountDownLatch release = new CountDownLatch(1);
+        Supplier<Double> blocked = () -> {
+            try {
+                release.await();
+            } catch (InterruptedException ignored) {}
+            return 1d;
+        };
+
+        CompletableFuture<Double> running = scheduler.submit(1L, blocked, Double.NaN);
+        CompletableFuture<Double> queued = scheduler.submit(1L, blocked, Double.NaN);
+        CompletableFuture<Double> overflow = scheduler.submit(1L, blocked, Double.NaN);
+
+        assertTrue(overflow.isDone());
+        assertTrue(Double.isNaN(overflow.join()));
+        assertEquals(1, scheduler.getRejectedCount());
+        release.countDown();
+        assertEquals(1d, running.join());
+        assertEquals(1d, queued.join());
+    }
+
+    @Test
+    @DisplayName("Load test with random delays keeps threads bounded")
+    public void shouldStayBoundedUnderLoad() throws InterruptedException {
+        int maxConcurrent = 64;
+        int callers = 50;
+        scheduler = new PriceRequestScheduler(SLA, maxConcurrent, 16, false);
+        PriceAggregator priceAggregator = new PriceAggregator(scheduler);
+        CountingRetriever retriever = new CountingRetriever();
+        priceAggregator.setPriceRetriever(retriever);
+
+        AtomicLong maxDuration = new AtomicLong();
+        CountDownLatch latch = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        int threadsBefore = threads.getThreadCount();
+        threads.resetPeakThreadCount();
+
+        for (int i = 0; i < callers; i++) {
+            long itemId = i;
+            executor.submit(() -> {
+                try {
+                    latch.await();
+                } catch (InterruptedException ignored) {}
+
+                for (int it = 0; it < 3; it++) {
+                    long start = System.currentTimeMillis();
+                    priceAggregator.getMinPrice(itemId);
+                    maxDuration.accumulateAndGet(System.currentTimeMillis() - start, Math::max);
+                }
+            });
+        }
+
+        latch.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+        // callers, request threads that may still be returning, the timer and a few JVM threads
+        int maxThreads = threadsBefore + callers + maxConcurrent * 2 + 8;
+        assertTrue(retriever.maxRunning.get() <= maxConcurrent, "Too many requests in flight: " + retriever.maxRunning.get());
+        assertTrue(threads.getPeakThreadCount() <= maxThreads, "Too many threads: " + threads.getPeakThreadCount());
+        assertTrue(maxDuration.get() < SLA + SLACK, "Method evaluated too long: " + maxDuration.get());
+        assertTrue(scheduler.getTimeoutCount() + scheduler.getRejectedCount() > 0);
+        awaitNoInFlight();
+    }
+
+    // counts calls inside the shop itself, apart from the scheduler's own bookkeeping
+    private static class CountingRetriever extends PriceRetriever {
+        private final AtomicInteger running = new AtomicInteger();
+        private final AtomicInteger maxRunning = new AtomicInteger();
+
+        @Override
+        public double getPrice(long itemId, long shopId) {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                return super.getPrice(itemId, shopId);
+            } finally {
+                running.decrementAndGet();
+            }
+        }
+    }
+
+    // interrupted requests give their threads back right after the SLA
+    private void awaitNoInFlight() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + SLACK;
+        while (scheduler.getInFlightCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, scheduler.getInFlightCount());
+    }
+}
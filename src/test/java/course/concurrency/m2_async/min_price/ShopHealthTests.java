@@ -0,0 +1,104 @@
+package course.concurrency.m2_async.min_price;
+
+import course.concurrency.m2_async.cf.min_price.ShopHealth;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ShopHealthTests {
+
+    @Test
+    @DisplayName("Percentile is taken from the shop's own latencies")
+    public void shouldEstimatePercentile() {
+        ShopHealth health = new ShopHealth(3000, 5, 1000);
+        assertEquals(-1, health.getPercentileMillis(1, 0.95), "Too few samples for estimate");
+
+        for (int i = 0; i < 95; i++) {
+            health.recordSuccess(1, 42);
+        }
+        for (int i = 0; i < 5; i++) {
+            health.recordSuccess(1, 900);
+        }
+
+        assertEquals(50, health.getPercentileMillis(1, 0.95));
+        assertEquals(910, health.getPercentileMillis(1, 0.99));
+        assertEquals(-1, health.getPercentileMillis(2, 0.95));
+    }
+
+    @Test
+    @DisplayName("Failures and timeouts count in the percentile")
+    public void shouldRecordFailureLatency() {
+        ShopHealth health = new ShopHealth(3000, 1000, 1000);
+
+        for (int i = 0; i < 90; i++) {
+            health.recordSuccess(1, 42);
+        }
+        for (int i = 0; i < 10; i++) {
+            health.recordFailure(1, 3000);
+        }
+
+        assertEquals(3010, health.getPercentileMillis(1, 0.95));
+    }
+
+    @Test
+    @DisplayName("Late success doesn't close an open breaker")
+    public void shouldNotCloseOpenBreakerOnLateSuccess() {
+        ShopHealth health = new ShopHealth(3000, 3, 10_000);
+
+        for (int i = 0; i < 3; i++) {
+            health.recordFailure(1, 10);
+        }
+        health.recordSuccess(1, 10);
+
+        assertTrue(health.isOpen(1), "Only a probe should close the breaker");
+        assertFalse(health.allowRequest(1));
+    }
+
+    @Test
+    @DisplayName("Open breaker lets a single probe through after cool down")
+    public void shouldProbeAfterCoolDown() throws InterruptedException {
+        ShopHealth health = new ShopHealth(3000, 3, 100);
+
+        for (int i = 0; i < 3; i++) {
+            assertTrue(health.allowRequest(1));
+            health.recordFailure(1, 10);
+        }
+        assertFalse(health.allowRequest(1), "Breaker should be open");
+        assertTrue(health.allowRequest(2), "Other shops are not affected");
+
+        Thread.sleep(150);
+        assertTrue(health.allowRequest(1), "Probe should be allowed");
+        assertFalse(health.allowRequest(1), "Only one probe at a time");
+
+        health.recordFailure(1, 10);
+        assertFalse(health.allowRequest(1), "Failed probe opens breaker again");
+
+        Thread.sleep(150);
+        assertTrue(health.allowRequest(1));
+        health.recordSuccess(1, 10);
+        assertFalse(health.isOpen(1));
+        assertTrue(health.allowRequest(1));
+    }
+
+    @Test
+    @DisplayName("Rejected probe is given back without a failure")
+    public void shouldGiveBackRejectedProbe() throws InterruptedException {
+        ShopHealth health = new ShopHealth(3000, 3, 100);
+
+        for (int i = 0; i < 3; i++) {
+            health.recordRejected(1);
+        }
+        assertFalse(health.isOpen(1), "Rejections are not failures");
+
+        for (int i = 0; i < 3; i++) {
+            health.recordFailure(1, 10);
+        }
+        Thread.sleep(150);
+        assertTrue(health.allowRequest(1));
+        health.recordRejected(1);
+        assertTrue(health.allowRequest(1), "Next request should probe instead");
+    }
+}
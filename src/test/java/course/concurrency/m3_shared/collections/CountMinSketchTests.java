@@ -0,0 +1,65 @@
+package course.concurrency.m3_shared.collections;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CountMinSketchTests {
+
+    private static final int poolSize = Runtime.getRuntime().availableProcessors() * 2;
+
+    @Test
+    @DisplayName("Estimate is never below the real count and close to it")
+    public void estimateBounds() {
+        CountMinSketch sketch = new CountMinSketch(4, 1 << 12);
+        for (int i = 0; i < 100_000; i++) {
+            sketch.add("name" + i);
+        }
+        for (int i = 0; i < 1000; i++) {
+            sketch.add("hot");
+        }
+
+        long estimate = sketch.estimate("hot");
+        assertTrue(estimate >= 1000);
+        // e * total / width ~ 67
+        assertTrue(estimate < 1000 + 100, "Estimate " + estimate);
+        assertEquals(0, new CountMinSketch(4, 1 << 12).estimate("hot"));
+    }
+
+    @Test
+    @DisplayName("Concurrent adds are not lost")
+    public void concurrentAdds() throws InterruptedException {
+        int iterations = 100_000;
+        CountMinSketch sketch = new CountMinSketch(4, 1 << 10);
+        ExecutorService executor = Executors.newFixedThreadPool(poolSize);
+        CountDownLatch latch = new CountDownLatch(1);
+
+        for (int i = 0; i < poolSize; i++) {
+            executor.submit(() -> {
+                try {
+                    latch.await();
+                } catch (InterruptedException ignored) {}
+                for (int it = 0; it < iterations; it++) {
+                    sketch.add("A");
+                }
+            });
+        }
+        latch.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+        assertEquals((long) iterations * poolSize, sketch.estimate("A"));
+    }
+
+    @Test
+    @DisplayName("Width must be a power of two")
+    public void illegalWidth() {
+        assertThrows(IllegalArgumentException.class, () -> new CountMinSketch(4, 1000));
+    }
+}
@@ -0,0 +1,49 @@
+package course.concurrency.m3_shared.collections;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HeavyHittersTests {
+
+    @Test
+    @DisplayName("Heaviest keys stay in the top among many light ones")
+    public void keepHeaviest() {
+        CountMinSketch sketch = new CountMinSketch(4, 1 << 12);
+        HeavyHitters top = new HeavyHitters(3);
+
+        for (int i = 0; i < 50_000; i++) {
+            String key = "random" + i;
+            top.offer(key, sketch.add(key));
+            if (i % 10 == 0) {
+                top.offer("X", sketch.add("X"));
+            }
+            if (i % 20 == 0) {
+                top.offer("Y", sketch.add("Y"));
+            }
+        }
+
+        Map<String, Long> snapshot = top.snapshot();
+        assertEquals(3, snapshot.size());
+        assertEquals(List.of("X", "Y"), List.copyOf(snapshot.keySet()).subList(0, 2));
+        assertTrue(snapshot.get("X") >= 5000);
+    }
+
+    @Test
+    @DisplayName("Repeated offers update the count instead of adding entries")
+    public void updateCount() {
+        HeavyHitters top = new HeavyHitters(2);
+
+        top.offer("A", 1);
+        top.offer("A", 2);
+        top.offer("B", 1);
+        top.offer("C", 1);
+        top.offer("C", 3);
+
+        assertEquals(Map.of("C", 3L, "A", 2L), top.snapshot());
+    }
+}
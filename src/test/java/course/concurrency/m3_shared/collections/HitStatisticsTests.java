@@ -0,0 +1,108 @@
+package course.concurrency.m3_shared.collections;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HitStatisticsTests {
+
+    private static final int poolSize = Runtime.getRuntime().availableProcessors() * 4;
+
+    @Test
+    @DisplayName("Same name gets the same slot")
+    public void registerOnce() {
+        HitStatistics hits = new HitStatistics(2);
+
+        int a = hits.register("A");
+        int b = hits.register("B");
+
+        assertNotEquals(a, b);
+        assertEquals(a, hits.register("A"));
+        assertEquals(b, hits.slotOf("B"));
+        assertEquals(-1, hits.slotOf("C"));
+        assertThrows(IllegalStateException.class, () -> hits.register("C"));
+    }
+
+    @Test
+    @DisplayName("Snapshot contains only names with hits")
+    public void snapshot() {
+        HitStatistics hits = new HitStatistics(2);
+        int a = hits.register("A");
+        hits.register("B");
+
+        hits.increment(a);
+        hits.increment(a);
+
+        assertEquals(Map.of("A", 2L), hits.snapshot());
+    }
+
+    @Test
+    @DisplayName("Concurrent increments are not lost, snapshots are monotonic")
+    public void concurrentIncrements() throws InterruptedException {
+        int iterations = 100_000;
+        HitStatistics hits = new HitStatistics(3, 4);
+        int[] slots = {hits.register("A"), hits.register("B"), hits.register("C")};
+        ExecutorService executor = Executors.newFixedThreadPool(poolSize);
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicInteger decreased = new AtomicInteger();
+
+        for (int i = 0; i < poolSize; i++) {
+            executor.submit(() -> {
+                try {
+                    latch.await();
+                } catch (InterruptedException ignored) {}
+                for (int it = 0; it < iterations; it++) {
+                    for (int slot : slots) {
+                        hits.increment(slot);
+                    }
+                }
+            });
+        }
+        Thread reader = new Thread(() -> {
+            long last = 0;
+            while (!done.get()) {
+                long current = hits.sum(slots[0]);
+                if (current < last) {
+                    decreased.incrementAndGet();
+                }
+                last = current;
+            }
+        });
+        reader.start();
+
+        latch.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+        done.set(true);
+        reader.join();
+
+        assertEquals(0, decreased.get());
+        for (int slot : slots) {
+            assertEquals((long) iterations * poolSize, hits.sum(slot));
+        }
+    }
+
+    @Test
+    @DisplayName("Unknown names are counted too")
+    public void unknownNames() {
+        RestaurantService service = new RestaurantService();
+
+        assertNotNull(service.getByName("A"));
+        assertNull(service.getByName("X"));
+        service.addToStat("A");
+
+        assertEquals(2, service.printStat().size());
+        assertTrue(service.printStat().contains("A - 2"));
+        assertTrue(service.printStat().contains("X - 1"));
+    }
+}
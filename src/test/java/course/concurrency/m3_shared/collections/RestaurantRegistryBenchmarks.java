@@ -0,0 +1,134 @@
+package course.concurrency.m3_shared.collections;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Catalog of {@code size} restaurants, {@code snapshot} is {@link RestaurantRegistry},
+ * {@code chm} a ConcurrentHashMap of name to Restaurant as RestaurantService kept before,
+ * {@code exact} and {@code bounded} the whole {@link RestaurantService} in that stat mode,
+ * counters included. {@code get} looks up existing names in random order, {@code reload}
+ * builds a new catalog. The heap taken by the catalog is printed once per trial, measured
+ * as used heap after GC before and after building it, so it is only an estimate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RestaurantRegistryBenchmarks {
+
+    @Param({"snapshot", "chm", "exact", "bounded"})
+    private String registry;
+
+    @Param({"1000", "1000000"})
+    private int size;
+
+    private List<String> names;
+    private String[] queries;
+    private RestaurantRegistry snapshotRegistry;
+    private Map<String, Restaurant> chmRegistry;
+    private RestaurantService service;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(RestaurantRegistryBenchmarks.class.getSimpleName())
+                .warmupIterations(2)
+                .measurementIterations(5)
+                .forks(1)
+                .build();
+
+        new Runner(opt).run();
+    }
+
+    @Setup
+    public void setup() {
+        // new String instances, so names are not shared with the queries
+        names = IntStream.range(0, size).mapToObj(i -> new String("restaurant-" + i)).collect(Collectors.toList());
+        queries = new String[1 << 16];
+        for (int i = 0; i < queries.length; i++) {
+            queries[i] = "restaurant-" + (int) (Math.random() * size);
+        }
+
+        long before = usedHeap();
+        Object catalog = build();
+        long after = usedHeap();
+        System.out.printf("%n%s of %d restaurants: ~%d bytes per restaurant, names included%n",
+                registry, size, (after - before) / size);
+        if (catalog instanceof RestaurantRegistry) {
+            snapshotRegistry = (RestaurantRegistry) catalog;
+        } else if (catalog instanceof RestaurantService) {
+            service = (RestaurantService) catalog;
+        } else {
+            @SuppressWarnings("unchecked")
+            Map<String, Restaurant> map = (Map<String, Restaurant>) catalog;
+            chmRegistry = map;
+        }
+    }
+
+    @Benchmark
+    public Restaurant get(Cursor cursor) {
+        String name = queries[cursor.next++ & (queries.length - 1)];
+        if (service != null) {
+            return service.getByName(name);
+        }
+        return "snapshot".equals(registry) ? snapshotRegistry.get(name) : chmRegistry.get(name);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Object reload() {
+        if (service != null) {
+            service.reload(names);
+            return service;
+        }
+        if ("snapshot".equals(registry)) {
+            snapshotRegistry.reload(names);
+            return snapshotRegistry;
+        }
+        Map<String, Restaurant> map = new ConcurrentHashMap<>();
+        names.forEach(name -> map.put(name, new Restaurant(name)));
+        chmRegistry = map;
+        return map;
+    }
+
+    // catalog built from copies of the names, so that the strings count for the chm
+    private Object build() {
+        List<String> copies = names.stream().map(String::new).collect(Collectors.toList());
+        switch (registry) {
+            case "snapshot":
+                return new RestaurantRegistry(copies);
+            case "exact":
+                return new RestaurantService(RestaurantService.StatMode.EXACT, copies);
+            case "bounded":
+                return new RestaurantService(RestaurantService.StatMode.BOUNDED, copies);
+            default:
+                Map<String, Restaurant> map = new ConcurrentHashMap<>();
+                copies.forEach(name -> map.put(name, new Restaurant(name)));
+                return map;
+        }
+    }
+
+    private static long usedHeap() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,89 @@
+package course.concurrency.m3_shared.collections;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RestaurantRegistryTests {
+
+    private static final int poolSize = Runtime.getRuntime().availableProcessors() * 2;
+
+    @Test
+    @DisplayName("Finds every added name and nothing else")
+    public void lookup() {
+        List<String> names = IntStream.range(0, 10_000).mapToObj(i -> "restaurant" + i).collect(Collectors.toList());
+        RestaurantRegistry registry = new RestaurantRegistry(names);
+
+        assertEquals(names.size(), registry.size());
+        for (String name : names) {
+            assertEquals(name, registry.get(name).getName());
+        }
+        assertNull(registry.get("restaurant10000"));
+        assertNull(registry.get("restaurant1x"));
+        assertNull(registry.get(""));
+    }
+
+    @Test
+    @DisplayName("Colliding hashes, duplicates and non-ASCII names")
+    public void tricky() {
+        // "Aa" and "BB" have the same hashCode
+        RestaurantRegistry registry = new RestaurantRegistry(List.of("Aa", "BB", "Aa", "Кафе", "Caé", ""));
+
+        assertEquals(5, registry.size());
+        assertSame(registry.get("Aa"), registry.get(new String("Aa")));
+        assertEquals("BB", registry.get("BB").getName());
+        assertEquals("Кафе", registry.get("Кафе").getName());
+        assertEquals("Caé", registry.get("Caé").getName());
+        assertEquals("", registry.get("").getName());
+        assertNull(registry.get("Кафа"));
+        assertNull(registry.get("Ca"));
+    }
+
+    @Test
+    @DisplayName("Readers see either the old or the new catalog during reload")
+    public void reload() throws InterruptedException {
+        List<String> even = IntStream.range(0, 1000).mapToObj(i -> "r" + (i * 2)).collect(Collectors.toList());
+        List<String> odd = IntStream.range(0, 1000).mapToObj(i -> "r" + (i * 2 + 1)).collect(Collectors.toList());
+        RestaurantRegistry registry = new RestaurantRegistry(even);
+        ExecutorService executor = Executors.newFixedThreadPool(poolSize);
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicInteger mixed = new AtomicInteger();
+
+        for (int i = 0; i < poolSize; i++) {
+            executor.submit(() -> {
+                try {
+                    latch.await();
+                } catch (InterruptedException ignored) {}
+                while (!done.get()) {
+                    RestaurantRegistry.Snapshot snapshot = registry.snapshot();
+                    boolean isEven = snapshot.get("r0") != null;
+                    if ((snapshot.get("r1998") != null) != isEven || (snapshot.get("r1") != null) == isEven) {
+                        mixed.incrementAndGet();
+                    }
+                }
+            });
+        }
+        latch.countDown();
+        for (int i = 0; i < 200; i++) {
+            registry.reload(i % 2 == 0 ? odd : even);
+        }
+        done.set(true);
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(0, mixed.get());
+        assertNotNull(registry.get("r0"));
+    }
+}
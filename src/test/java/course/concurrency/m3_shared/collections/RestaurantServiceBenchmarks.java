@@ -0,0 +1,92 @@
+package course.concurrency.m3_shared.collections;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
+
+/**
+ * Every thread looks up A, B and C in turn.
+ * {@code striped} is {@link RestaurantService}, {@code map} the previous version
+ * that counted hits in a ConcurrentHashMap of LongAdders keyed by name, {@code bounded}
+ * is {@link RestaurantService} in BOUNDED stat mode.
+ * {@code getUnknown} queries a million distinct missing names, where the map modes
+ * keep a counter per name and {@code bounded} stays within its sketch.
+ * {@link #main} runs all of them with 1 to 64 threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RestaurantServiceBenchmarks {
+
+    private static final String[] NAMES = {"A", "B", "C"};
+    private static final String[] UNKNOWN = IntStream.range(0, 1 << 20)
+            .mapToObj(i -> "unknown" + i)
+            .toArray(String[]::new);
+
+    @Param({"striped", "map", "bounded"})
+    private String stat;
+
+    private RestaurantService service;
+    private MapStatService mapService;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        for (int threads = 1; threads <= 64; threads *= 2) {
+            Options opt = new OptionsBuilder()
+                    .include(RestaurantServiceBenchmarks.class.getSimpleName())
+                    .warmupIterations(2)
+                    .measurementIterations(5)
+                    .threads(threads)
+                    .forks(1)
+                    .build();
+
+            new Runner(opt).run();
+        }
+    }
+
+    @Setup
+    public void setup() {
+        service = new RestaurantService("bounded".equals(stat)
+                ? RestaurantService.StatMode.BOUNDED : RestaurantService.StatMode.EXACT);
+        mapService = new MapStatService();
+    }
+
+    @Benchmark
+    public Restaurant getByName(Cursor cursor) {
+        String name = NAMES[cursor.next++ % NAMES.length];
+        return "map".equals(stat) ? mapService.getByName(name) : service.getByName(name);
+    }
+
+    @Benchmark
+    public Restaurant getUnknown(Cursor cursor) {
+        String name = UNKNOWN[cursor.next++ & (UNKNOWN.length - 1)];
+        return "map".equals(stat) ? mapService.getByName(name) : service.getByName(name);
+    }
+
+    static class MapStatService {
+        private final Map<String, Restaurant> restaurantMap = new ConcurrentHashMap<>() {{
+            put("A", new Restaurant("A"));
+            put("B", new Restaurant("B"));
+            put("C", new Restaurant("C"));
+        }};
+
+        private final Map<String, LongAdder> stat = new ConcurrentHashMap<>();
+
+        Restaurant getByName(String restaurantName) {
+            stat.computeIfAbsent(restaurantName, name -> new LongAdder()).increment();
+            return restaurantMap.get(restaurantName);
+        }
+    }
+}
@@ -3,15 +3,23 @@ package course.concurrency.m3_shared.collections;
 import course.concurrency.exams.auction.ExecutionStatistics;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
 
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class RestaurantServiceTests {
@@ -69,4 +77,82 @@ public class RestaurantServiceTests {
 
         stat.addData("service",end - start);
     }
+
+    @Test
+    @DisplayName("Bounded mode keeps only the heaviest unknown names")
+    public void boundedStat() {
+        RestaurantService bounded = new RestaurantService(RestaurantService.StatMode.BOUNDED);
+
+        for (int i = 0; i < 100_000; i++) {
+            bounded.getByName("A");
+            bounded.getByName("random" + i);
+            if (i % 10 == 0) {
+                bounded.getByName("typo");
+            }
+        }
+
+        Set<String> statResult = bounded.printStat();
+        Map<String, Long> topMisses = bounded.getTopMisses();
+        assertEquals(16, topMisses.size());
+        assertEquals("typo", topMisses.keySet().iterator().next());
+        assertEquals(1 + topMisses.size(), statResult.size());
+        assertTrue(statResult.contains("A - 100000"));
+        assertTrue(bounded.getRate("A") > 0);
+        assertTrue(bounded.getMissRate() > bounded.getRate("A"));
+    }
+
+    @Test
+    @DisplayName("Reload keeps statistics of remaining restaurants")
+    public void reload() {
+        RestaurantService reloaded = new RestaurantService(RestaurantService.StatMode.EXACT, List.of("A", "B"));
+
+        reloaded.getByName("A");
+        reloaded.getByName("B");
+        reloaded.reload(List.of("A", "D"));
+        reloaded.getByName("A");
+        reloaded.getByName("D");
+
+        assertNotNull(reloaded.getByName("D"));
+        assertNull(reloaded.getByName("B"));
+        assertEquals(Set.of("A - 2", "B - 2", "D - 2"), reloaded.printStat());
+    }
+
+    @Test
+    @DisplayName("Every restaurant of a large catalog is counted as known, also after reloads")
+    public void largeCatalog() {
+        List<String> first = IntStream.range(0, 3000).mapToObj(i -> "first" + i).collect(Collectors.toList());
+        List<String> second = IntStream.range(0, 3000).mapToObj(i -> "second" + i).collect(Collectors.toList());
+        RestaurantService bounded = new RestaurantService(RestaurantService.StatMode.BOUNDED, first);
+
+        first.forEach(bounded::getByName);
+        bounded.reload(second);
+        second.forEach(bounded::getByName);
+
+        assertTrue(bounded.getTopMisses().isEmpty(), "Known restaurants should not count as misses");
+        assertEquals(0.0, bounded.getMissRate());
+        assertEquals(second.size(), bounded.printStat().size(), "Restaurants that left should be dropped");
+        assertTrue(bounded.printStat().contains("second2999 - 1"));
+    }
+
+    @Test
+    @DisplayName("Rates are kept for the most looked up restaurants only, also after reloads")
+    public void topRates() {
+        List<String> names = IntStream.range(0, 1000).mapToObj(i -> "r" + i).collect(Collectors.toList());
+        RestaurantService bounded = new RestaurantService(RestaurantService.StatMode.BOUNDED, names);
+
+        names.forEach(bounded::getByName);
+        for (int i = 0; i < 10_000; i++) {
+            bounded.getByName("r" + (i % 4));
+        }
+
+        for (int i = 0; i < 4; i++) {
+            assertTrue(bounded.getRate("r" + i) > 0, "r" + i + " should be in the top");
+        }
+        long rated = names.stream().filter(name -> bounded.getRate(name) > 0).count();
+        assertTrue(rated <= 16, rated + " restaurants have rates");
+
+        bounded.reload(names.subList(1, names.size()));
+        assertEquals(0.0, bounded.getRate("r0"));
+        assertTrue(bounded.getRate("r1") > 0, "Rate should carry over");
+    }
 }
@@ -0,0 +1,100 @@
+package course.concurrency.m3_shared.collections;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class SlidingWindowCounterTests {
+
+    @Test
+    @DisplayName("Rate covers the last seconds only")
+    public void slideWindow() {
+        AtomicLong now = new AtomicLong(1_000_000);
+        AtomicLongArray totals = new AtomicLongArray(2);
+        SlidingWindowCounter counter = new SlidingWindowCounter(2, 10, totals::get, now::get);
+
+        counter.sample();
+        totals.addAndGet(0, 100);
+        now.addAndGet(1000);
+        counter.sample();
+        totals.addAndGet(0, 50);
+        totals.addAndGet(1, 50);
+        now.addAndGet(1000);
+
+        assertEquals(75.0, counter.rate(0));
+        assertEquals(25.0, counter.rate(1));
+
+        // first sample slides out of the window
+        now.addAndGet(8000);
+        assertEquals(50.0 / 9, counter.rate(0), 1e-9);
+
+        now.addAndGet(60_000);
+        totals.addAndGet(0, 10);
+        assertEquals(0.0, counter.rate(0));
+    }
+
+    @Test
+    @DisplayName("Sampling more than once a second keeps the first sample")
+    public void sampleOncePerSecond() {
+        AtomicLong now = new AtomicLong(1_000_000);
+        AtomicLongArray totals = new AtomicLongArray(1);
+        SlidingWindowCounter counter = new SlidingWindowCounter(1, 10, totals::get, now::get);
+
+        counter.sample();
+        totals.addAndGet(0, 10);
+        counter.sample();
+        now.addAndGet(2000);
+
+        assertEquals(5.0, counter.rate(0));
+    }
+
+    @Test
+    @DisplayName("Replacing counter continues the window of mapped keys")
+    public void carryOver() {
+        AtomicLong now = new AtomicLong(1_000_000);
+        AtomicLongArray totals = new AtomicLongArray(2);
+        SlidingWindowCounter previous = new SlidingWindowCounter(1, 10, totals::get, now::get);
+
+        previous.sample();
+        totals.addAndGet(0, 40);
+        now.addAndGet(2000);
+        previous.sample();
+
+        // key 0 is new, key 1 continues the previous key 0
+        SlidingWindowCounter next = new SlidingWindowCounter(2, 10,
+                key -> key == 0 ? totals.get(1) : totals.get(0), now::get);
+        next.carryOver(previous, key -> key == 0 ? -1 : 0);
+        totals.addAndGet(0, 20);
+        totals.addAndGet(1, 8);
+        now.addAndGet(2000);
+
+        assertEquals(15.0, next.rate(1));
+        assertEquals(2.0, next.rate(0));
+    }
+
+    @Test
+    @DisplayName("Restarted key ignores samples of its previous total")
+    public void restart() {
+        AtomicLong now = new AtomicLong(1_000_000);
+        AtomicLongArray totals = new AtomicLongArray(2);
+        AtomicInteger followed = new AtomicInteger();
+        SlidingWindowCounter counter = new SlidingWindowCounter(1, 10, key -> totals.get(followed.get()), now::get);
+
+        counter.sample();
+        totals.addAndGet(0, 100);
+        totals.addAndGet(1, 1000);
+        now.addAndGet(1000);
+
+        followed.set(1);
+        counter.restart(0);
+        totals.addAndGet(1, 30);
+        now.addAndGet(2000);
+
+        assertEquals(15.0, counter.rate(0));
+    }
+}